@@ -0,0 +1,340 @@
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the smallest cost matching of a bipartite graph with Bertsekas'
+ * auction algorithm. Every request (Set B) has a price, and every unassigned
+ * taxi (Set A) bids for the request with the lowest cost plus price, raising
+ * its price by the gap to the second lowest plus epsilon. The bid takes the
+ * request away from its previous taxi, which has to bid again.
+ * <p>
+ *
+ * Bids are made in Jacobi style: in each round all unassigned taxis bid at
+ * once against the same prices, in parallel on the {@link SharedPool}, and then
+ * every request goes to its highest bid (the lowest taxi on ties). Each round
+ * only depends on the prices, so the result does not depend on the number of
+ * threads.
+ * <p>
+ *
+ * A matching found with a given epsilon costs at most n epsilon more than the
+ * optimum. The auction starts with a large epsilon and divides it by
+ * {@link #SCALING_FACTOR} after each phase, keeping the prices, until it
+ * reaches a final epsilon that puts n epsilon at {@link #TOLERANCE} times the
+ * largest cost (which gives the optimum exactly for integer costs below
+ * 1 / TOLERANCE). The final epsilon never goes below {@link #MIN_EPSILON}
+ * times the largest cost, so for n above TOLERANCE / MIN_EPSILON (10^4) the
+ * gap to the optimum is at most n MIN_EPSILON times the largest cost instead:
+ * max(TOLERANCE, n MIN_EPSILON) times the largest cost in general.
+ * <p>
+ *
+ * The costs are read from several threads at once, so the oracle must allow
+ * that. If there are more taxis than requests the costs are treated as if
+ * they were padded with zero cost requests, and if there are more requests
+ * than taxis with zero cost taxis, the same way {@link HungarianAlgorithm}
+ * does.
+ */
+public class AuctionAlgorithm {
+
+	private static final double SCALING_FACTOR = 5.0;
+
+	// Largest gap to the optimum, relative to the largest cost
+	private static final double TOLERANCE = 1e-9;
+
+	// Smallest final epsilon relative to the largest cost, so the bid
+	// increments never vanish in the rounding of the prices
+	private static final double MIN_EPSILON = 1e-13;
+
+	// Bids below this many cost evaluations run on the calling thread
+	private static final int BLOCK_COSTS = 1 << 14;
+
+	private final CostOracle costs;
+	private final int rows, cols, dim;
+
+	private final double[] prices;
+	private final int[] requestByTaxi, taxiByRequest;
+
+	// Unassigned taxis of the current round and the bid each one makes
+	private int[] bidders;
+	private int numBidders;
+	private final int[] bidRequest;
+	private final double[] bidPrice;
+
+	// Best bid on each request in the current round
+	private final int[] winningBid;
+
+	private double epsilon;
+	private int numRounds;
+
+	// Told about every phase and the bids of every round, or null
+	private MatchingListener listener;
+
+	/**
+	 * Creates the matcher.
+	 *
+	 * @param costs
+	 *            The costs of matching each taxi to each request, safe to read
+	 *            from several threads
+	 */
+	public AuctionAlgorithm(CostOracle costs) {
+		this.costs = costs;
+		this.rows = costs.numTaxis();
+		this.cols = costs.numRequests();
+		this.dim = Math.max(rows, cols);
+
+		prices = new double[dim];
+		requestByTaxi = new int[dim];
+		taxiByRequest = new int[dim];
+
+		bidders = new int[dim];
+		bidRequest = new int[dim];
+		bidPrice = new double[dim];
+		winningBid = new int[dim];
+		Arrays.fill(winningBid, -1);
+	}
+
+	/**
+	 * Matches every taxi.
+	 *
+	 * @return The request matched to each taxi. A value of -1 means the taxi
+	 *         is unmatched (only when there are more taxis than requests).
+	 */
+	public int[] execute() {
+		Arrays.fill(prices, 0.0);
+		numRounds = 0;
+
+		double maxCost = maxCost();
+		double finalEpsilon = maxCost * Math.max(TOLERANCE / Math.max(dim, 1), MIN_EPSILON);
+		if (finalEpsilon == 0.0) {
+			// Every cost is 0, so any matching is optimal
+			finalEpsilon = 1.0;
+		}
+
+		epsilon = Math.max(maxCost / SCALING_FACTOR, finalEpsilon);
+		while (true) {
+			auction();
+			if (epsilon <= finalEpsilon) {
+				break;
+			}
+			epsilon = Math.max(epsilon / SCALING_FACTOR, finalEpsilon);
+		}
+
+		int[] result = Arrays.copyOf(requestByTaxi, rows);
+		for (int i = 0; i < rows; i++) {
+			if (result[i] >= cols) {
+				result[i] = -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Runs one phase of the auction with the current epsilon, starting from
+	 * an empty matching and the prices of the previous phase.
+	 */
+	private void auction() {
+		Arrays.fill(requestByTaxi, -1);
+		Arrays.fill(taxiByRequest, -1);
+		for (int i = 0; i < dim; i++) {
+			bidders[i] = i;
+		}
+		numBidders = dim;
+
+		int[] nextBidders = new int[dim];
+		int phaseRounds = 0;
+		while (numBidders > 0) {
+			numRounds++;
+			phaseRounds++;
+			// Every bid reads the cost of each request
+			if (listener != null) {
+				listener.onRelaxations((long) numBidders * dim);
+			}
+
+			Bids bids = new Bids(0, numBidders);
+			if ((long) numBidders * dim <= BLOCK_COSTS) {
+				bids.compute();
+			} else {
+				SharedPool.invoke(bids);
+			}
+
+			// Every request goes to its highest bid, the earliest bidder on
+			// ties
+			for (int k = 0; k < numBidders; k++) {
+				int j = bidRequest[k];
+				if (winningBid[j] == -1 || bidPrice[k] > bidPrice[winningBid[j]]) {
+					winningBid[j] = k;
+				}
+			}
+
+			// Losing bidders and the taxis that were outbid bid again in the
+			// next round
+			int numNext = 0;
+			for (int k = 0; k < numBidders; k++) {
+				int j = bidRequest[k];
+				int winner = winningBid[j];
+				if (winner == -1) {
+					// Already handled by an earlier bid on the same request
+					nextBidders[numNext++] = bidders[k];
+					continue;
+				}
+				if (winner != k) {
+					nextBidders[numNext++] = bidders[k];
+					continue;
+				}
+
+				int previous = taxiByRequest[j];
+				if (previous != -1) {
+					requestByTaxi[previous] = -1;
+					nextBidders[numNext++] = previous;
+				}
+				taxiByRequest[j] = bidders[k];
+				requestByTaxi[bidders[k]] = j;
+				prices[j] = bidPrice[k];
+				winningBid[j] = -1;
+			}
+
+			int[] swap = bidders;
+			bidders = nextBidders;
+			nextBidders = swap;
+			numBidders = numNext;
+		}
+
+		if (listener != null) {
+			listener.onPhase(phaseRounds);
+		}
+	}
+
+	/**
+	 * Computes the bid of the k-th unassigned taxi: the request with the
+	 * lowest cost plus price, and its price raised by the gap to the second
+	 * lowest plus epsilon.
+	 */
+	private void bid(int k) {
+		int i = bidders[k];
+
+		int best = -1;
+		double bestValue = Double.POSITIVE_INFINITY;
+		double secondValue = Double.POSITIVE_INFINITY;
+		for (int j = 0; j < dim; j++) {
+			double value = cost(i, j) + prices[j];
+			if (value < bestValue) {
+				secondValue = bestValue;
+				bestValue = value;
+				best = j;
+			} else if (value < secondValue) {
+				secondValue = value;
+			}
+		}
+
+		double increment = secondValue == Double.POSITIVE_INFINITY ? epsilon : secondValue
+				- bestValue + epsilon;
+		bidRequest[k] = best;
+		bidPrice[k] = prices[best] + increment;
+	}
+
+	/**
+	 * Largest cost over every taxi and request.
+	 */
+	private double maxCost() {
+		double[] rowMax = new double[rows];
+		SharedPool.invoke(new MaxCosts(rowMax, 0, rows));
+
+		double maxCost = 0.0;
+		for (double value : rowMax) {
+			maxCost = Math.max(maxCost, value);
+		}
+		return maxCost;
+	}
+
+	/**
+	 * Cost of matching taxi i to request j, zero for padded taxis and
+	 * requests.
+	 */
+	private double cost(int i, int j) {
+		return i < rows && j < cols ? costs.cost(i, j) : 0.0;
+	}
+
+	/**
+	 * Computes the bids of the unassigned taxis [lo, hi).
+	 */
+	private class Bids extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int lo, hi;
+
+		private Bids(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if ((long) (hi - lo) * dim <= BLOCK_COSTS || hi - lo == 1) {
+				for (int k = lo; k < hi; k++) {
+					bid(k);
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Bids(lo, mid), new Bids(mid, hi));
+		}
+	}
+
+	/**
+	 * Finds the largest cost of each taxi in [lo, hi).
+	 */
+	private class MaxCosts extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final double[] rowMax;
+		private final int lo, hi;
+
+		private MaxCosts(double[] rowMax, int lo, int hi) {
+			this.rowMax = rowMax;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if ((long) (hi - lo) * cols <= BLOCK_COSTS || hi - lo <= 1) {
+				for (int i = lo; i < hi; i++) {
+					double max = 0.0;
+					for (int j = 0; j < cols; j++) {
+						max = Math.max(max, costs.cost(i, j));
+					}
+					rowMax[i] = max;
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new MaxCosts(rowMax, lo, mid), new MaxCosts(rowMax, mid, hi));
+		}
+	}
+
+	/**
+	 * Sets the listener told about every phase, with the number of bidding
+	 * rounds it took, and about the costs read by the bids of every round.
+	 *
+	 * @param listener
+	 *            The listener, or null for none
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public double[] getPrices() {
+		return prices;
+	}
+
+	/**
+	 * @return The number of bidding rounds of the last execution, over all
+	 *         phases
+	 */
+	public int getNumRounds() {
+		return numRounds;
+	}
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An online matching session that buffers requests into windows and answers
+ * each window at once, sitting between {@link OnlineSession} (a window of one
+ * request) and the offline matching (a single window of every request). A
+ * window closes when it holds a given number of requests or when its oldest
+ * request has waited a given time, whichever comes first.
+ * <p>
+ *
+ * The requests of a closing window are revealed to the same
+ * {@link OnlineMatcher} as in an online session, so the residual graph and
+ * potentials of every earlier window are reused and each request costs one
+ * shortest path search. Those searches pick the free taxis that extend the
+ * matching of all requests revealed so far at the smallest cost. The picked
+ * taxis are then dispatched to the window's requests by an optimal assignment
+ * between the two ({@link CompactHungarianAlgorithm}), instead of each taxi
+ * going to the request whose search found it. With a window of one request
+ * this is exactly the online session, and with a single window of every
+ * request and a constant of 1 it is the offline optimum.
+ */
+public class BatchSession {
+
+	private final OnlineMatcher matcher;
+	private final CostOracle costs;
+	private final int numSetA;
+
+	private final int windowSize;
+	private final long windowNanos;
+
+	// Requests of the open window, with their arrival times
+	private final int[] window;
+	private final long[] arrivals;
+	private int windowCount;
+
+	private final ArrayList<Long> windowLatencies = new ArrayList<Long>();
+	private double totalCost;
+
+	// Told about every request, or null
+	private MatchingListener listener;
+
+	/**
+	 * Opens a session with every taxi free.
+	 *
+	 * @param costs
+	 *            The costs between taxis and requests
+	 * @param constant
+	 *            Constant multiplier applied to revealed costs
+	 * @param coefficients
+	 *            Multiplier of each revealed edge
+	 * @param windowSize
+	 *            Number of requests that closes a window, at least 1
+	 * @param windowNanos
+	 *            Time in nanoseconds the oldest request of a window may wait
+	 *            before the window closes, or 0 to close windows by size only
+	 */
+	public BatchSession(CostOracle costs, double constant, CoefficientStrategy coefficients,
+			int windowSize, long windowNanos) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be at least 1: " + windowSize);
+		}
+		this.matcher = new OnlineMatcher(costs, constant, coefficients);
+		this.costs = costs;
+		this.numSetA = costs.numTaxis();
+		this.windowSize = windowSize;
+		this.windowNanos = windowNanos;
+
+		window = new int[windowSize];
+		arrivals = new long[windowSize];
+	}
+
+	/**
+	 * Buffers an incoming request, closing the open window first if its time
+	 * is up and closing the window it joins if that one is then full.
+	 *
+	 * @param location
+	 *            The destination index of the request: numSetA <= location <
+	 *            numSetA*2, same as the values of permuteDestinations
+	 * @return The dispatch decisions of the windows that closed, empty if the
+	 *         request is still waiting
+	 */
+	public ArrayList<Dispatch> onRequest(int location) {
+		long now = System.nanoTime();
+		ArrayList<Dispatch> dispatches = poll(now);
+
+		window[windowCount] = location - numSetA;
+		arrivals[windowCount++] = now;
+		if (windowCount == windowSize) {
+			dispatches.addAll(closeWindow());
+		}
+		return dispatches;
+	}
+
+	/**
+	 * Closes the open window if its oldest request has waited for the window
+	 * time. Meant to be called periodically when no request arrives.
+	 *
+	 * @return The dispatch decisions of the window, empty if it did not close
+	 */
+	public ArrayList<Dispatch> poll() {
+		return poll(System.nanoTime());
+	}
+
+	private ArrayList<Dispatch> poll(long now) {
+		if (windowNanos > 0 && windowCount > 0 && now - arrivals[0] >= windowNanos) {
+			return closeWindow();
+		}
+		return new ArrayList<Dispatch>();
+	}
+
+	/**
+	 * Closes the open window whatever its size or age, e.g. after the last
+	 * request.
+	 *
+	 * @return The dispatch decisions of the window
+	 */
+	public ArrayList<Dispatch> flush() {
+		return closeWindow();
+	}
+
+	/**
+	 * Matches every request of the open window and dispatches the taxis.
+	 * Requests that were already served, or that find no free taxi, are
+	 * dropped the same way {@link OnlineSession#onRequest(int)} drops them.
+	 */
+	private ArrayList<Dispatch> closeWindow() {
+		ArrayList<Dispatch> dispatches = new ArrayList<Dispatch>();
+		if (windowCount == 0) {
+			return dispatches;
+		}
+		long start = System.nanoTime();
+
+		// One search per request picks the taxis to send
+		int[] requests = new int[windowCount];
+		long[] requestArrivals = new long[windowCount];
+		int[] taxis = new int[windowCount];
+		int count = 0;
+		for (int k = 0; k < windowCount; k++) {
+			int taxi = matcher.match(window[k]);
+			if (taxi != -1) {
+				requests[count] = window[k];
+				requestArrivals[count] = arrivals[k];
+				taxis[count++] = taxi;
+			}
+		}
+		windowCount = 0;
+
+		// Send the picked taxis to the requests at the smallest total cost
+		double[] windowCosts = new double[count * count];
+		for (int a = 0; a < count; a++) {
+			for (int b = 0; b < count; b++) {
+				windowCosts[a * count + b] = costs.cost(taxis[a], requests[b]);
+			}
+		}
+		int[] assignment = count > 0 ? new CompactHungarianAlgorithm(new FlatCostOracle(
+				windowCosts, count, count)).execute() : new int[0];
+
+		long end = System.nanoTime();
+		windowLatencies.add(end - start);
+
+		for (int a = 0; a < count; a++) {
+			int b = assignment[a];
+			double cost = windowCosts[a * count + b];
+			totalCost += cost;
+			dispatches.add(new Dispatch(taxis[a], numSetA + requests[b], cost, new int[] {
+					taxis[a], numSetA + requests[b] }, end - requestArrivals[b]));
+			if (listener != null) {
+				listener.onRequest(end - requestArrivals[b]);
+			}
+		}
+		return dispatches;
+	}
+
+	/**
+	 * Sets the listener told about the latency of every dispatched request,
+	 * including its wait for the window, and about the augmentations of the
+	 * searches that picked the taxis.
+	 * 
+	 * @param listener
+	 *            The listener, or null for none
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+		matcher.setListener(listener);
+	}
+
+	/**
+	 * Returns the total net cost of every request dispatched so far.
+	 *
+	 * @return The total net cost of the batched matching
+	 */
+	public double getTotalCost() {
+		return totalCost;
+	}
+
+	/**
+	 * Returns how long each closed window took to match and dispatch, in the
+	 * order they closed. The latency of each request, including the time it
+	 * waited for its window, is in its {@link Dispatch}.
+	 *
+	 * @return The latency of each window in nanoseconds
+	 */
+	public long[] getWindowLatencies() {
+		long[] latencies = new long[windowLatencies.size()];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = windowLatencies.get(i);
+		}
+		return latencies;
+	}
+}
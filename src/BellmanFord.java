@@ -1,10 +1,7 @@
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Random;
 
 /**
  * Computes the smallest cost matching (online, offline and greedy) of a
@@ -19,14 +16,65 @@ public class BellmanFord {
 	// Constant multiplier to improve competitive ratio
 	private double constant = 1.0;
 
-	private UberObject[] taxis; // Set A
-	private UberObject[] customers; // Set B
-	private double[][] costMatrix; // Cost matrix where each element is distance
+	// The data set being matched, and shortcuts to its parts
+	private MatchingInstance instance;
+	private CostOracle costs; // Cost of each taxi/request pair (distance)
+
+	// Number of costs cached by the oracle of generatePoints, 0 for none
+	private int cacheSize = 0;
+
+	private PointSet taxiPoints; // Set A locations
+	private PointSet requestPoints; // Set B locations
+	private CoefficientStrategy coefficients; // Online coefficients, or null
+
+	// Whether csv data sets are read from and saved to a TripCache
+	private boolean useTripCache = true;
+
+	// Source of every random choice (data sets, destination and source orders)
+	private Random random = new Random();
+
+	// Range of the synthetic 1D points, 0 for the SyntheticData default
+	private int syntheticRange = 0;
+
+	// Nearest neighbors kept per taxi and per request by offline-sparse
+	private int sparseNeighbors = 10;
+
+	// Requests and milliseconds that close a window of the batch algorithm
+	// (0 milliseconds closes windows by size only)
+	private int batchSize = 10;
+	private long batchMillis = 0;
+
+	// Latency of every window of the last batch run (nanoseconds)
+	private long[] windowLatencies = new long[0];
+
+	// Negative cycles canceled by the last offline run
+	private int canceledCycles = 0;
+
+	// Receives the counters and timers of every run, or null for none
+	private MatchingListener listener;
 	
 	//Heuristic flags for evaluation
 	private static final boolean HEURISTIC_COEFFICIENT_LINE = true; 
 	
 
+	/**
+	 * Creates a matcher without a data set, to be generated with
+	 * {@link #generateCostMatrix(String, int)} or
+	 * {@link #generatePoints(String, int)}.
+	 */
+	public BellmanFord() {
+	}
+
+	/**
+	 * Creates a matcher on an existing data set.
+	 * 
+	 * @param instance
+	 *            The data set to match
+	 */
+	public BellmanFord(MatchingInstance instance) {
+		use(instance);
+	}
+
 	/**
 	 * Sets the constant multiplier that improves competitive ratio
 	 * 
@@ -37,6 +85,101 @@ public class BellmanFord {
 		this.constant = constant;
 	}
 
+	/**
+	 * Sets the coefficient the online algorithms multiply each revealed cost
+	 * by. By default it is the constant, or {@link LineCoefficients} for data
+	 * sets on a line.
+	 * 
+	 * @param coefficients
+	 *            The coefficient of each edge, or null for the default
+	 */
+	public void setCoefficientStrategy(CoefficientStrategy coefficients) {
+		this.coefficients = coefficients;
+	}
+
+	/**
+	 * Sets the listener told about the augmentations, relaxations, graph
+	 * builds, negative cycles and request latencies of every following run.
+	 * 
+	 * @param listener
+	 *            The listener, or null to stop counting
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets how many computed costs are cached when the costs come from
+	 * {@link #generatePoints(String, int)} instead of a dense matrix.
+	 * 
+	 * @param cacheSize
+	 *            Maximum number of cached costs, 0 for no cache
+	 */
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Sets whether parsed trips and their cost matrix are kept in a binary
+	 * {@link TripCache} next to the csv file, so later runs over the same
+	 * trips skip parsing and the distance computation.
+	 * 
+	 * @param useTripCache
+	 *            True to read and write the cache, false to always parse
+	 */
+	public void setUseTripCache(boolean useTripCache) {
+		this.useTripCache = useTripCache;
+	}
+
+	/**
+	 * Makes every random choice repeatable: the synthetic data sets, the
+	 * destination orders and the source order of the offline algorithm. The
+	 * same seed and the same sequence of calls give the same results.
+	 * 
+	 * @param seed
+	 *            The seed
+	 */
+	public void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Sets the range of the "synthetic1D" data source, whose points are
+	 * integers 0 <= x < range.
+	 * 
+	 * @param syntheticRange
+	 *            The number of possible points, at least the number of taxis
+	 */
+	public void setSyntheticRange(int syntheticRange) {
+		this.syntheticRange = syntheticRange;
+	}
+
+	/**
+	 * Sets how many nearest requests of each taxi (and nearest taxis of each
+	 * request) the "offline-sparse" algorithm keeps as edges.
+	 * 
+	 * @param sparseNeighbors
+	 *            The number of neighbors, larger values are slower but less
+	 *            likely to need densifying
+	 */
+	public void setSparseNeighbors(int sparseNeighbors) {
+		this.sparseNeighbors = sparseNeighbors;
+	}
+
+	/**
+	 * Sets when the "batch" algorithm closes a window of buffered requests.
+	 * 
+	 * @param batchSize
+	 *            Number of requests that closes a window, at least 1
+	 * @param batchMillis
+	 *            Milliseconds the oldest request of a window may wait before
+	 *            it closes, or 0 to close windows by size only
+	 */
+	public void setBatchWindow(int batchSize, long batchMillis) {
+		this.batchSize = batchSize;
+		this.batchMillis = batchMillis;
+	}
+
 	/**
 	 * Generates a randomized list of request or destination indices for the
 	 * online algorithm to utilize.
@@ -54,7 +197,7 @@ public class BellmanFord {
 			destinationIndices.add(i);
 		}
 
-		Collections.shuffle(destinationIndices);
+		Collections.shuffle(destinationIndices, random);
 
 		return destinationIndices;
 	}
@@ -69,24 +212,101 @@ public class BellmanFord {
 	 *            The number of taxis (nodes in set A)
 	 */
 	public void generateCostMatrix(String dataSource, int numSetA) {
+		SyntheticData data = newSyntheticData();
+		double[][] costMatrix = null;
+
 		switch (dataSource) {
 		case "synthetic1D":
-			costMatrix = new SyntheticData().generateSynthetic1D(numSetA);
+			costMatrix = data.generateSynthetic1D(numSetA);
 			break;
 		case "synthetic2D":
-			costMatrix = new SyntheticData().generateSynthetic2D(numSetA);
+			costMatrix = data.generateSynthetic2D(numSetA);
 			break;
 		case "synthetic2DExample1":
-			costMatrix = new SyntheticData().generateSynthetic2DExample(numSetA);
+			costMatrix = data.generateSynthetic2DExample(numSetA);
 			break;
 		case "synthetic2DExample2":
-			costMatrix = new SyntheticData().generateSynthetic2DExample2(numSetA);
+			costMatrix = data.generateSynthetic2DExample2(numSetA);
 			break;
 		default:
-			parseData(dataSource, numSetA);
-			computeCostMatrix();
+			loadTrips(dataSource, numSetA, true);
+			use(new MatchingInstance(costs, taxiPoints, requestPoints));
+			return;
+		}
+
+		use(new MatchingInstance(new MatrixCostOracle(costMatrix), data.getTaxis(),
+				data.getRequests()));
+	}
+
+	/**
+	 * Generates only the taxi and request locations of a data source, without
+	 * the cost matrix. Costs are then computed from the locations whenever an
+	 * algorithm asks for them (see {@link PointCostOracle}), so memory grows
+	 * with n instead of n*n.
+	 * 
+	 * @param dataSource
+	 *            The type of data source. (Same values as generateCostMatrix)
+	 * @param numSetA
+	 *            The number of taxis (nodes in set A)
+	 */
+	public void generatePoints(String dataSource, int numSetA) {
+		SyntheticData data = newSyntheticData();
+
+		switch (dataSource) {
+		case "synthetic1D":
+			data.generatePoints1D(numSetA);
+			break;
+		case "synthetic2D":
+			data.generatePoints2D(numSetA);
+			break;
+		case "synthetic2DExample1":
+			data.generatePoints2DExample(numSetA);
 			break;
+		case "synthetic2DExample2":
+			data.generatePoints2DExample2(numSetA);
+			break;
+		default:
+			loadTrips(dataSource, numSetA, false);
+			use(new MatchingInstance(new PointCostOracle(taxiPoints, requestPoints, cacheSize),
+					taxiPoints, requestPoints));
+			return;
+		}
+
+		use(new MatchingInstance(new PointCostOracle(data.getTaxis(), data.getRequests(),
+				cacheSize), data.getTaxis(), data.getRequests()));
+	}
+
+	/**
+	 * Makes an instance the data set being matched.
+	 */
+	private void use(MatchingInstance instance) {
+		this.instance = instance;
+		this.costs = instance.getCosts();
+		this.taxiPoints = instance.getTaxis();
+		this.requestPoints = instance.getRequests();
+	}
+
+	/**
+	 * Returns the data set generated last. Its costs can be read from several
+	 * threads, even when they come from a cached {@link PointCostOracle}, so
+	 * it can be handed to {@link MatchingSolver}s running in parallel.
+	 * 
+	 * @return The data set being matched
+	 */
+	public MatchingInstance getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Creates a synthetic data generator with the next seed and the
+	 * configured range.
+	 */
+	private SyntheticData newSyntheticData() {
+		SyntheticData data = new SyntheticData(random.nextLong());
+		if (syntheticRange > 0) {
+			data.setRange(syntheticRange);
 		}
+		return data;
 	}
 
 	/**
@@ -96,13 +316,25 @@ public class BellmanFord {
 	 *            The number of taxis (nodes in set A)
 	 * @param type
 	 *            The type of algorithm to execute. ("hungarian", "offline",
-	 *            "online" or "greedy")
+	 *            "offline-dijkstra", "offline-sparse", "auction", "online",
+	 *            "online-incremental", "batch", "greedy" or "greedy-spatial")
 	 * @param destinationIndices
 	 *            The ArrayList of randomized destination indices
 	 * @return The total net cost of the best matching based on the type of
 	 *         algorithm executed.
+	 * @throws IllegalArgumentException
+	 *             If the data set has a different number of taxis and
+	 *             requests and the type is not "hungarian", "offline-dijkstra"
+	 *             or "auction", the only ones that match such data sets
+	 *             optimally
 	 */
 	public double execute(int numSetA, String type, ArrayList<Integer> destinationIndices) {
+		if (costs.numTaxis() != costs.numRequests() && !supportsRectangular(type)) {
+			throw new IllegalArgumentException("\"" + type
+					+ "\" needs as many taxis as requests, got " + costs.numTaxis()
+					+ " taxis and " + costs.numRequests() + " requests");
+		}
+
 		double result = 0.0;
 
 		switch (type) {
@@ -112,34 +344,59 @@ public class BellmanFord {
 		case "offline":
 			result = computeOfflineMatching(numSetA);
 			break;
+		case "offline-dijkstra":
+			result = computeOfflineDijkstraMatching();
+			break;
+		case "offline-sparse":
+			result = computeSparseOfflineMatching();
+			break;
+		case "auction":
+			result = computeAuctionMatching();
+			break;
 		case "online":
 			result = computeOnlineMatching(numSetA, destinationIndices);
 			break;
+		case "online-incremental":
+			result = computeIncrementalOnlineMatching(numSetA, destinationIndices);
+			break;
+		case "batch":
+			result = computeBatchMatching(destinationIndices);
+			break;
 		case "greedy":
 			result = computeGreedyMatching(numSetA, destinationIndices);
 			break;
+		case "greedy-spatial":
+			result = computeSpatialGreedyMatching(numSetA, destinationIndices);
+			break;
 		}
 		return result;
 
 	}
 
+	/**
+	 * Is the type one that matches a data set with a different number of
+	 * taxis and requests optimally? The others assume a square data set.
+	 */
+	private static boolean supportsRectangular(String type) {
+		return type.equals("hungarian") || type.equals("offline-dijkstra")
+				|| type.equals("auction");
+	}
+
 	/**
 	 * Computes the smallest cost matching using the Hungarian algorithm. For
-	 * verification purposes.
+	 * verification purposes. Runs directly over the cost oracle (see
+	 * {@link CompactHungarianAlgorithm}), so it needs no copy of the costs and
+	 * also works on costs from {@link #generatePoints(String, int)}.
 	 * 
 	 * @return The net total cost of the optimal matching found by executing
 	 *         Hungarian algorithm.
 	 */
 	public double verifyHungarian() {
-		HungarianAlgorithm test = new HungarianAlgorithm(costMatrix);
+		CompactHungarianAlgorithm test = new CompactHungarianAlgorithm(costs);
+		test.setListener(listener);
+		test.execute();
 
-		int[] tester = test.execute();
-		double totalCost = 0;
-		for (int i = 0; i < tester.length; i++) {
-			totalCost += costMatrix[i][tester[i]];
-		}
-
-		return totalCost;
+		return test.getTotalCost();
 	}
 
 	/**
@@ -154,24 +411,21 @@ public class BellmanFord {
 	 * @return The total net cost of the best offline matching
 	 */
 	public double computeOfflineMatching(int numSetA) {
-		// Final offline matching ArrayList of directed edges
-		ArrayList<DirectedEdge> offlineMatching = new ArrayList<DirectedEdge>();
+		// Matched vertices of both sets for internal management
+		MatchingState matching = new MatchingState(numSetA + costs.numRequests());
 
-		// Temporary matching ArrayList of Set B values for internal management
-		ArrayList<Integer> matching = new ArrayList<Integer>();
-
-		// ArrayList that stores all negative cycle indices for repeated
-		// processing
-		ArrayList<Integer> negativeCycleIndex = new ArrayList<Integer>();
+		canceledCycles = 0;
 
 		// Index of the current source node being processed
 		int index = 0;
 
-		// Boolean value that is set to true
-		boolean runNegativeCycleIndices = false;
-
-		// Construct a DiGraph from the original costmatrix
-		EdgeWeightedDigraph original = constructDigraphFromMatrix(costMatrix);
+		// Construct the residual graph of the empty matching from the original
+		// costmatrix
+		long buildStart = listener != null ? System.nanoTime() : 0;
+		ResidualGraph residual = ResidualGraph.fromCosts(costs);
+		if (listener != null) {
+			listener.onGraphBuilt(System.nanoTime() - buildStart);
+		}
 
 		ArrayList<Integer> sourceIndices = new ArrayList<Integer>();
 		for (int i = 0; i < numSetA; i++) {
@@ -179,7 +433,7 @@ public class BellmanFord {
 		}
 
 		// Randomizes the source node indices chosen for augmentation
-		Collections.shuffle(sourceIndices);
+		Collections.shuffle(sourceIndices, random);
 
 		/*
 		 * Core of the algorithm
@@ -188,117 +442,159 @@ public class BellmanFord {
 		 * picked and BellmanFord is ran on that node. This computes all the
 		 * paths and their costs from the source node to every target node. All
 		 * paths are processed to choose the minimum cost and to also check for
-		 * negative cycles. If a negative cycle occurs on the node, then add it
-		 * to the negativeCycleIndex ArrayList and move on to the next source
-		 * node. Else, the minimum cost path is chosen. The best path
-		 * (augmenting or direct path) is added to an ArrayList bestPath and a
-		 * new DiGraph is constructed with the best cost matching and the
-		 * previous matchings. This new edge matching is added to the matchings
-		 * ArrayList and the original DiGraph is updated with this new DiGraph.
-		 * The process is repeated.
-		 * 
-		 * If negative cycles occurred during the processing, an additional
-		 * iteration over the negativeCycleIndex ArrayList is ran to process
-		 * these indices and find their proper matchings.
+		 * negative cycles. If a negative cycle occurs on the node, the cycle is
+		 * canceled: every edge on it is reversed in place in the residual
+		 * graph, which swaps the mates of the matched taxis on the cycle and
+		 * lowers the cost of the matching right away. The same source is then
+		 * searched again. Else, the minimum cost path is chosen. Every edge on
+		 * the best path (augmenting or direct path) is reversed in place in the
+		 * residual graph, which removes the previously matched edges of the
+		 * path from the matching and adds the new ones. The process is
+		 * repeated.
 		 */
-		while (matching.size() < numSetA) {
-
-			if (index == numSetA) { // Last source index to process?
-				if (negativeCycleIndex.size() > 0) { // Negative cycles to
-														// process?
-					index = negativeCycleIndex.remove(0);
-					runNegativeCycleIndices = true;
-				} else {
-					break; // All processing complete
-				}
-			}
+		while (matching.size() < numSetA && index < numSetA) {
 
 			int source = sourceIndices.get(index);
 
 			// Run BellmanFord algorithm on source index
-			BellmanFordSP sp = new BellmanFordSP(original, source);
+			ResidualBellmanFordSP sp = new ResidualBellmanFordSP(residual, source);
+			if (listener != null) {
+				listener.onRelaxations(sp.getNumRelaxations());
+			}
 
-			Iterator<DirectedEdge> iter = null;
-			ArrayList<DirectedEdge> bestPath = new ArrayList<DirectedEdge>();
+			// Cancel the negative cycle and search from the same source again
+			if (sp.hasNegativeCycle()) {
+				int[] cycle = sp.negativeCycle();
+				for (int e : cycle) {
+					if (residual.from(e) < numSetA) {
+						matching.match(residual.from(e), residual.to(e));
+					}
+					residual.reverse(e);
+				}
+				canceledCycles++;
+				if (listener != null) {
+					listener.onNegativeCycle(cycle.length);
+				}
+				continue;
+			}
 
+			int bestTarget = -1;
 			double minPath = Double.MAX_VALUE;
 
 			// Obtain minimum cost path
-			for (int v = numSetA; v < original.V(); v++) {
+			for (int v = numSetA; v < residual.V(); v++) {
 
 				// If vertex is already in the matching, skip it
-				if (matching.contains(v)) {
+				if (matching.isMatched(v)) {
 					continue;
 				}
 
-				// Check if vertex causes a negative cycle
-				if (sp.hasNegativeCycle()) {
-					negativeCycleIndex.add(index);
-					index++;
-					break;
-				}
-
 				// Check if a path exists from source vertex to destination
 				// vertex v
-				if (sp.hasPathTo(v)) {
-					if (sp.distTo(v) < minPath) {
-						minPath = sp.distTo(v);
-						iter = sp.pathTo(v).iterator();
-					}
+				if (sp.hasPathTo(v) && sp.distTo(v) < minPath) {
+					minPath = sp.distTo(v);
+					bestTarget = v;
 				}
 			}
 
-			// Negative cycle detected, don't process current index
-			if (iter == null) {
-				if (runNegativeCycleIndices) {
-					index = numSetA;
+			// Augment the matching along the best path, if a free vertex is
+			// reachable from the source. Only the edges on the path change
+			// direction.
+			if (bestTarget != -1) {
+				int[] path = sp.pathTo(bestTarget);
+				for (int e : path) {
+					if (residual.from(e) < numSetA) {
+						matching.match(residual.from(e), residual.to(e));
+					}
+					residual.reverse(e);
+				}
+				if (listener != null) {
+					listener.onAugmentation(path.length);
 				}
-				continue;
 			}
 
-			while (iter.hasNext()) {
-				bestPath.add(iter.next());
+			index++;
+		}
+
+		double totalCost = 0;
+		for (int i = 0; i < numSetA; i++) {
+			if (matching.isMatched(i)) {
+				totalCost += costs.cost(i, matching.mate(i) - numSetA);
 			}
+		}
 
-			// New iteration DiGraph that will have updated edges
-			EdgeWeightedDigraph nextIterationGraph = new EdgeWeightedDigraph(numSetA
-					+ costMatrix[0].length);
+		return totalCost;
+	}
 
-			// Update matchings and new DiGraph
-			for (DirectedEdge e : original.edges()) {
-				if (bestPath.contains(e)) {
-					DirectedEdge edgeToAdd = new DirectedEdge(e.to(), e.from(), -1.0 * e.weight());
-					nextIterationGraph.addEdge(edgeToAdd);
-					if (edgeToAdd.weight() <= 0) {
-						if (!matching.contains(e.to())) {
-							matching.add(e.to());
-						}
-					}
-				} else {
-					nextIterationGraph.addEdge(e);
-				}
+	/**
+	 * Computes the smallest cost matching in the offline setting using
+	 * shortest augmenting paths found by Dijkstra over reduced costs. Gives the
+	 * same total net cost as {@link #computeOfflineMatching(int)} without
+	 * running Bellman Ford once per augmentation.
+	 * 
+	 * @return The total net cost of the best offline matching
+	 */
+	public double computeOfflineDijkstraMatching() {
+		ShortestAugmentingPath sap = new ShortestAugmentingPath(costs);
+		sap.setListener(listener);
+
+		int[] matching = sap.execute();
+		double totalCost = 0;
+		for (int i = 0; i < matching.length; i++) {
+			if (matching[i] != -1) {
+				totalCost += costs.cost(i, matching[i]);
 			}
+		}
 
-			original = nextIterationGraph;
+		return totalCost;
+	}
 
-			// Increment index if not processing negative cycles, else set index
-			// to last source node
-			if (!runNegativeCycleIndices) {
-				index++;
-			} else {
-				index = numSetA;
+	/**
+	 * Computes the offline matching on a sparse graph that only keeps the
+	 * edges between each taxi or request and its nearest neighbors (see
+	 * {@link SparseShortestAugmentingPath}). Needs O(n k) memory instead of a
+	 * dense graph, so it also works on costs from
+	 * {@link #generatePoints(String, int)}.
+	 * 
+	 * @return The total net cost of the offline matching over the sparse graph
+	 */
+	public double computeSparseOfflineMatching() {
+		SparseShortestAugmentingPath sparse = new SparseShortestAugmentingPath(taxiPoints,
+				requestPoints, costs, sparseNeighbors);
+		sparse.setListener(listener);
+
+		int[] matching = sparse.execute();
+		double totalCost = 0;
+		for (int i = 0; i < matching.length; i++) {
+			if (matching[i] != -1) {
+				totalCost += costs.cost(i, matching[i]);
 			}
 		}
 
-		// Add all matched edges to offline matching with proper weight
-		for (DirectedEdge edge : original.edges()) {
-			if (edge.weight() < 0) {
-				offlineMatching.add(new DirectedEdge(edge.to(), edge.from(), -1.0 * edge.weight()));
+		return totalCost;
+	}
+
+	/**
+	 * Computes the offline matching with the auction algorithm, bidding in
+	 * parallel on every core (see {@link AuctionAlgorithm}). The cost is at
+	 * most max(1e-9, n 1e-13) times the largest edge cost above
+	 * {@link #verifyHungarian()}, where n is the number of taxis or requests,
+	 * whichever is larger.
+	 * 
+	 * @return The total net cost of the offline matching found by the auction
+	 */
+	public double computeAuctionMatching() {
+		AuctionAlgorithm auction = new AuctionAlgorithm(costs);
+		auction.setListener(listener);
+
+		int[] matching = auction.execute();
+		double totalCost = 0;
+		for (int i = 0; i < matching.length; i++) {
+			if (matching[i] != -1) {
+				totalCost += costs.cost(i, matching[i]);
 			}
 		}
 
-		double totalCost = calculateTotalCost(offlineMatching);
-
 		return totalCost;
 	}
 
@@ -317,8 +613,8 @@ public class BellmanFord {
 		// Final online matching ArrayList of directed edges
 		ArrayList<DirectedEdge> onlineMatching = new ArrayList<DirectedEdge>();
 
-		// Temporary matching ArrayList of Set B values for internal management
-		ArrayList<Integer> matching = new ArrayList<Integer>();
+		// Matched vertices of both sets for internal management
+		MatchingState matching = new MatchingState(numSetA + costs.numRequests());
 
 		// Index of the current source node being processed
 		int index = 0;
@@ -333,6 +629,8 @@ public class BellmanFord {
 		// Construct a DiGraph from the original costmatrix
 		EdgeWeightedDigraph original = null;
 
+		CoefficientStrategy strategy = coefficientStrategy();
+
 		/*
 		 * Core of the algorithm
 		 * 
@@ -353,41 +651,37 @@ public class BellmanFord {
 
 			// The index of the incoming request
 			int destinationIndex = destinationIndices.get(index);
+			long requestStart = listener != null ? System.nanoTime() : 0;
 
 			// Normalized matrix where all the costs of the incoming request to
 			// each taxi are revealed
-			tempMatrix = normalizeMatrix(destinationIndex - numSetA, tempMatrix);
+			tempMatrix = normalizeMatrix(destinationIndex - numSetA, tempMatrix, strategy);
 
 			// DiGraph of the normalized matrix
+			long buildStart = listener != null ? System.nanoTime() : 0;
 			original = constructDigraphFromMatrix(tempMatrix);
+			if (listener != null) {
+				listener.onGraphBuilt(System.nanoTime() - buildStart);
+			}
 
 			ArrayList<DirectedEdge> bestPath = new ArrayList<DirectedEdge>();
-			Iterator<DirectedEdge> iter = null;
-
-			double minPath = Double.MAX_VALUE;
 
-			// Checks each source index to the incoming destination index for a
-			// path and stores the minimum path.
+			// Checks each free source index to the incoming destination index
+			// for a path and keeps the minimum path, the first in source order
+			// on ties. The Bellman Ford runs are independent and run in
+			// parallel.
+			int[] freeSources = new int[numSetA - matching.size()];
+			int numFree = 0;
 			for (int source : sourceIndices) {
-
-				if (matching.contains(source)) {
-					continue;
-				}
-
-				BellmanFordSP sp = new BellmanFordSP(original, source);
-
-				if (sp.hasPathTo(destinationIndex)) {
-					double distance = sp.distTo(destinationIndex);
-
-					if (distance < minPath) {
-						minPath = distance;
-						iter = sp.pathTo(destinationIndex).iterator();
-					}
+				if (!matching.isMatched(source)) {
+					freeSources[numFree++] = source;
 				}
 			}
 
-			while (iter.hasNext()) {
-				bestPath.add(iter.next());
+			MultiSourceBellmanFord sp = new MultiSourceBellmanFord(original, freeSources,
+					destinationIndex);
+			for (DirectedEdge e : sp.getPath()) {
+				bestPath.add(e);
 			}
 
 			// The source and destination index from the best path
@@ -396,7 +690,7 @@ public class BellmanFord {
 
 			// New iteration DiGraph that will have updated edges
 			EdgeWeightedDigraph nextIterationGraph = new EdgeWeightedDigraph(numSetA
-					+ costMatrix[index].length);
+					+ costs.numRequests());
 
 			// Update matchings and new DiGraph. Checks each edge from the
 			// original digraph
@@ -417,15 +711,15 @@ public class BellmanFord {
 					}
 
 					nextIterationGraph.addEdge(edgeToAdd);
-					if (edgeToAdd.weight() <= 0.0) {
-						if (!matching.contains(e.from())) {
+					// Set A to Set B edges of the path enter the matching
+					if (edgeToAdd.weight() <= 0.0 && e.from() < numSetA) {
+						if (e.from() == source) {
 							// Add only new matched edges to the online
 							// matching. No duplicates.
-							matching.add(e.from());
-
 							onlineMatching.add(new DirectedEdge(destination, source,
-									costMatrix[source][destination - costMatrix[index].length]));
+									costs.cost(source, destination - numSetA)));
 						}
+						matching.match(e.from(), e.to());
 					}
 				} else {
 					// Add all updated edges to the next iteration graph
@@ -445,6 +739,11 @@ public class BellmanFord {
 				}
 
 			}
+			if (listener != null) {
+				listener.onAugmentation(bestPath.size());
+				listener.onRequest(System.nanoTime() - requestStart);
+			}
+
 			// Increments index to get the next destination node
 			index++;
 		}
@@ -455,6 +754,100 @@ public class BellmanFord {
 
 	}
 
+	/**
+	 * Computes the online matching with an {@link OnlineMatcher}. Same edge
+	 * weights and total net cost as {@link #computeOnlineMatching}, but the
+	 * residual graph and the vertex potentials are kept between requests and
+	 * every request is answered with one shortest path search from all free
+	 * taxis instead of one Bellman Ford run per free taxi.
+	 * 
+	 * @param numSetA
+	 *            The number of taxis (nodes in set A)
+	 * @param destinationIndices
+	 *            The ArrayList of randomized destination indices
+	 * 
+	 * @return The total net cost of the online matching
+	 */
+	public double computeIncrementalOnlineMatching(int numSetA, ArrayList<Integer> destinationIndices) {
+		OnlineSession session = openOnlineSession();
+
+		for (int destinationIndex : destinationIndices) {
+			session.onRequest(destinationIndex);
+		}
+
+		return session.getTotalCost();
+	}
+
+	/**
+	 * Opens a streaming online session on the current cost matrix, using the
+	 * same constant and coefficients as the online algorithm. Requests are then
+	 * fed one at a time through {@link OnlineSession#onRequest(int)}.
+	 * 
+	 * @return A new session with every taxi free
+	 */
+	public OnlineSession openOnlineSession() {
+		OnlineSession session = new OnlineSession(costs, constant, coefficientStrategy());
+		session.setListener(listener);
+		return session;
+	}
+
+	/**
+	 * Computes the online matching with requests buffered into windows (see
+	 * {@link BatchSession} and {@link #setBatchWindow(int, long)}). The
+	 * latency of each window is kept until the next run, see
+	 * {@link #getWindowLatencies()}.
+	 * 
+	 * @param destinationIndices
+	 *            The ArrayList of randomized destination indices, in arrival
+	 *            order
+	 * 
+	 * @return The total net cost of the batched matching
+	 */
+	public double computeBatchMatching(ArrayList<Integer> destinationIndices) {
+		BatchSession session = openBatchSession();
+
+		for (int destinationIndex : destinationIndices) {
+			session.onRequest(destinationIndex);
+		}
+		session.flush();
+
+		windowLatencies = session.getWindowLatencies();
+		return session.getTotalCost();
+	}
+
+	/**
+	 * Opens a batched session on the current cost matrix, using the same
+	 * constant and coefficients as the online algorithm and the window set by
+	 * {@link #setBatchWindow(int, long)}.
+	 * 
+	 * @return A new session with every taxi free
+	 */
+	public BatchSession openBatchSession() {
+		BatchSession session = new BatchSession(costs, constant, coefficientStrategy(),
+				batchSize, batchMillis * 1000000);
+		session.setListener(listener);
+		return session;
+	}
+
+	/**
+	 * Returns how long each window of the last "batch" run took to match and
+	 * dispatch.
+	 * 
+	 * @return The latency of each window in nanoseconds
+	 */
+	public long[] getWindowLatencies() {
+		return windowLatencies;
+	}
+
+	/**
+	 * Returns how many negative cycles the last "offline" run canceled.
+	 * 
+	 * @return The number of canceled cycles
+	 */
+	public int getCanceledCycles() {
+		return canceledCycles;
+	}
+
 	/**
 	 * Computes the greedy matching for a given cost matrix. Simply goes down
 	 * the column of the cost matrix based on the order dictated by the
@@ -472,29 +865,34 @@ public class BellmanFord {
 		// Final greedy matching
 		ArrayList<DirectedEdge> matching = new ArrayList<DirectedEdge>();
 
-		// Store set A node indices that are in the matching
-		ArrayList<Integer> fromMatchings = new ArrayList<Integer>();
+		// Matched vertices of both sets
+		MatchingState matchedVertices = new MatchingState(numSetA + costs.numRequests());
 
 		// Index of the current source node being processed
 		int index = 0;
 
 		while (matching.size() < numSetA) {
+			long requestStart = listener != null ? System.nanoTime() : 0;
+
 			// Get row of smallest element in column of destination index
 			double min = Double.MAX_VALUE;
 			DirectedEdge minEdge = null;
 
-			for (int i = 0; i < costMatrix.length; i++) {
+			for (int i = 0; i < costs.numTaxis(); i++) {
 				int destinationIndex = destinationIndices.get(index) - numSetA;
-				double cost = costMatrix[i][destinationIndex];
+				double cost = costs.cost(i, destinationIndex);
 				DirectedEdge edge = new DirectedEdge(i, destinationIndices.get(index), cost);
 
-				if (!fromMatchings.contains(edge.from()) && edge.weight() < min) {
+				if (!matchedVertices.isMatched(edge.from()) && edge.weight() < min) {
 					min = cost;
 					minEdge = edge;
 				}
 			}
 			matching.add(minEdge);
-			fromMatchings.add(minEdge.from());
+			matchedVertices.match(minEdge.from(), minEdge.to());
+			if (listener != null) {
+				listener.onRequest(System.nanoTime() - requestStart);
+			}
 			index++;
 		}
 
@@ -503,6 +901,48 @@ public class BellmanFord {
 		return totalCost;
 	}
 
+	/**
+	 * Computes the same greedy matching as {@link #computeGreedyMatching}
+	 * straight from the taxi and request locations. Free taxis are kept in a
+	 * {@link KdTree}, so every request is a nearest free neighbor query
+	 * followed by a deletion and the cost matrix is never used.
+	 * 
+	 * @param numSetA
+	 *            The number of taxis (nodes in set A)
+	 * @param destinationIndices
+	 *            The ArrayList of randomized destination indices
+	 * @return The total net cost of the greedy matching
+	 */
+	public double computeSpatialGreedyMatching(int numSetA, ArrayList<Integer> destinationIndices) {
+		Metric metric = taxiPoints.getMetric();
+		KdTree freeTaxis = new KdTree(metric.embed(taxiPoints), metric.isManhattan());
+		double[][] requestCoords = metric.embed(requestPoints);
+
+		double[] query = new double[requestCoords.length];
+		double totalCost = 0;
+
+		for (int destinationIndex : destinationIndices) {
+			long requestStart = listener != null ? System.nanoTime() : 0;
+			int request = destinationIndex - numSetA;
+			for (int d = 0; d < query.length; d++) {
+				query[d] = requestCoords[d][request];
+			}
+
+			int taxi = freeTaxis.nearest(query);
+			if (taxi == -1) {
+				break;
+			}
+			freeTaxis.remove(taxi);
+
+			totalCost += taxiPoints.distance(taxi, requestPoints, request);
+			if (listener != null) {
+				listener.onRequest(System.nanoTime() - requestStart);
+			}
+		}
+
+		return totalCost;
+	}
+
 	/**
 	 * Helper method that checks if two DirectedEdges are equal to each other.
 	 * To, from and weight attributes must equal in both objects.
@@ -592,7 +1032,7 @@ public class BellmanFord {
 	 * @return The initialized 2D array of doubles
 	 */
 	private double[][] generateInitialMatrix() {
-		double[][] tempMatrix = new double[costMatrix.length][costMatrix.length];
+		double[][] tempMatrix = new double[costs.numTaxis()][costs.numRequests()];
 
 		for (int i = 0; i < tempMatrix.length; i++) {
 			for (int j = 0; j < tempMatrix[i].length; j++) {
@@ -617,16 +1057,34 @@ public class BellmanFord {
 	 * @param tempMatrix
 	 *            The temporary matrix that gets updated based on an incoming
 	 *            request.
+	 * @param strategy
+	 *            The coefficient of each revealed edge
 	 * @return The updated matrix with an incoming request and its costs
 	 *         processed.
 	 */
-	private double[][] normalizeMatrix(int column, double[][] tempMatrix) {
+	private double[][] normalizeMatrix(int column, double[][] tempMatrix,
+			CoefficientStrategy strategy) {
 		for (int i = 0; i < tempMatrix.length; i++) {
-			tempMatrix[i][column] = !HEURISTIC_COEFFICIENT_LINE ? constant * costMatrix[i][column] : SyntheticData.coefficientMapping[i][column] * costMatrix[i][column];
+			tempMatrix[i][column] = strategy.coefficient(i, column) * costs.cost(i, column);
 		}
 		return tempMatrix;
 	}
 
+	/**
+	 * Returns the coefficients of the online algorithms: the ones set with
+	 * {@link #setCoefficientStrategy(CoefficientStrategy)}, else the line
+	 * heuristic for points on a line, else the constant for every edge.
+	 */
+	private CoefficientStrategy coefficientStrategy() {
+		if (coefficients != null) {
+			return coefficients;
+		}
+		if (HEURISTIC_COEFFICIENT_LINE && taxiPoints != null && taxiPoints.getMetric() == Metric.LINE) {
+			return new LineCoefficients(taxiPoints, requestPoints);
+		}
+		return new ConstantCoefficients(constant);
+	}
+
 	/**
 	 * Builds the EdgeWeightedDigraph when given a cost matrix
 	 * 
@@ -653,69 +1111,81 @@ public class BellmanFord {
 	}
 
 	/**
-	 * Computes the cost matrix by processing the taxis (Set A) and customers
-	 * (Set B) ArrayLists and calculating the haversine distance between their
-	 * locations.
+	 * Loads the trips of a csv data set, from its {@link TripCache} when there
+	 * is a valid one and by parsing the file otherwise. A parsed data set (or
+	 * a newly computed cost matrix) is written back to the cache.
+	 * 
+	 * @param filename
+	 *            Name of the data set csv file.
+	 * @param numSetA
+	 *            Number of trips to load
+	 * @param withCostMatrix
+	 *            True to also set the costs to the dense cost matrix
 	 */
-	private void computeCostMatrix() {
-		for (int i = 0; i < taxis.length; i++) {
-			for (int j = 0; j < customers.length; j++) {
-				costMatrix[i][j] = Distance.haversine(taxis[i].getLatitude(),
-						taxis[i].getLongitude(), customers[j].getLatitude(),
-						customers[j].getLongitude());
+	private void loadTrips(String filename, int numSetA, boolean withCostMatrix) {
+		TripCache cache = new TripCache(filename, numSetA);
+		boolean cached = false;
+
+		if (useTripCache) {
+			try {
+				cached = cache.load();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (cached) {
+			taxiPoints = cache.getTaxis();
+			requestPoints = cache.getRequests();
+			if (!withCostMatrix || cache.getCosts() != null) {
+				costs = cache.getCosts();
+				return;
+			}
+		} else {
+			parseData(filename, numSetA);
+		}
+
+		double[][] costMatrix = null;
+		if (withCostMatrix) {
+			costMatrix = PointSet.costMatrix(taxiPoints, requestPoints);
+			costs = new MatrixCostOracle(costMatrix);
+		}
+
+		if (useTripCache) {
+			try {
+				cache.write(taxiPoints, requestPoints, costMatrix);
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
 	}
 
 	/**
-	 * Parses the data set with the given filename. Reads each line and creates
-	 * a new UberObject for a taxi and customer, containing the latitude and
-	 * longitude for each.
+	 * Parses the data set with the given filename using a {@link TripLoader}.
+	 * The pickup location of each trip is a taxi and the dropoff location a
+	 * customer. Rows with missing or zero coordinates are skipped.
 	 * 
 	 * @param filename
 	 *            Name of the data set csv file.
 	 * @param maxLines
-	 *            Number of lines to parse.
+	 *            Number of trips to parse.
 	 */
 	private void parseData(String filename, int maxLines) {
-
-		taxis = new UberObject[maxLines];
-		customers = new UberObject[maxLines];
-		costMatrix = new double[maxLines][maxLines];
-
-		BufferedReader br = null;
-		String line = "";
-		String cvsSplitBy = ",";
+		TripLoader loader = new TripLoader(filename);
+		int loaded = 0;
 
 		try {
-
-			br = new BufferedReader(new FileReader(filename));
-			int currentLine = -1;
-			while ((line = br.readLine()) != null && currentLine < maxLines) {
-				if (currentLine == -1) {
-					currentLine++;
-					continue;
-				}
-				// use comma as separator
-				String[] data = line.split(cvsSplitBy);
-				taxis[currentLine] = new UberObject(data[11], data[10]);
-				customers[currentLine] = new UberObject(data[13], data[12]);
-
-				currentLine++;
-			}
-
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			loaded = loader.load(maxLines);
 		} catch (IOException e) {
 			e.printStackTrace();
-		} finally {
-			if (br != null) {
-				try {
-					br.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			}
 		}
+
+		if (loaded < maxLines) {
+			throw new IllegalArgumentException(filename + " only has " + loaded
+					+ " valid trips, " + maxLines + " requested");
+		}
+
+		taxiPoints = loader.getTaxis();
+		requestPoints = loader.getRequests();
 	}
 }
@@ -0,0 +1,19 @@
+/**
+ * Multiplier the online algorithm applies to the cost of an edge when its
+ * request is revealed. Implementations compute each coefficient when it is
+ * asked for, usually from the taxi and request locations, so no n by n table
+ * of coefficients is ever stored.
+ */
+public interface CoefficientStrategy {
+
+	/**
+	 * Coefficient of the edge between a taxi and a request.
+	 * 
+	 * @param taxi
+	 *            Index of the taxi (Set A)
+	 * @param request
+	 *            Index of the request (Set B)
+	 * @return The multiplier of the edge cost
+	 */
+	double coefficient(int taxi, int request);
+}
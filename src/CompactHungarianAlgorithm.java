@@ -0,0 +1,290 @@
+import java.util.Arrays;
+
+/**
+ * The Hungarian algorithm over a {@link CostOracle}, using O(n) memory on top
+ * of the costs. Unlike {@link HungarianAlgorithm} it never copies the costs
+ * into a padded square matrix: every cost is read from the oracle when it is
+ * needed, so it runs directly over a {@link MatrixCostOracle}, a row major
+ * {@link FlatCostOracle} or costs computed on demand.
+ * <p>
+ *
+ * Rectangular costs are solved as they are. The smaller side is matched
+ * (the workers) and the larger side keeps the unmatched vertices (the jobs).
+ * If there are more taxis than requests the requests become the workers, by
+ * reading the oracle with its indices swapped.
+ * <p>
+ *
+ * The labels of the workers and jobs stay feasible (no edge has a negative
+ * reduced cost) the whole time, and every matched edge stays tight. The
+ * starting labels are the row minima and a greedy pass matches every worker
+ * whose cheapest job is still free, in a single scan of the costs. Only the
+ * workers left over need a phase, and the algorithm stops as soon as every
+ * worker is matched, since the labels then certify the matching as optimal
+ * (see {@link #getDualBound()}). When the greedy pass already matches every
+ * worker no phase runs at all.
+ * <p>
+ *
+ * Each phase is a dense O(n m) Dijkstra over the reduced costs, where n is
+ * the number of workers and m the number of jobs.
+ */
+public class CompactHungarianAlgorithm {
+
+	private final CostOracle costs;
+	private final boolean transposed;
+	private final int workers, jobs;
+
+	private final double[] labelByWorker, labelByJob;
+	private final int[] jobByWorker, workerByJob;
+
+	// State of a phase, reused by every phase
+	private final double[] minSlackByJob;
+	private final int[] previousJob;
+	private final boolean[] committedJobs;
+
+	private int numPhases;
+	private double totalCost;
+
+	// Told about every augmentation, or null
+	private MatchingListener listener;
+
+	/**
+	 * Creates the algorithm.
+	 *
+	 * @param costs
+	 *            The costs of matching each taxi to each request
+	 */
+	public CompactHungarianAlgorithm(CostOracle costs) {
+		this.costs = costs;
+		this.transposed = costs.numTaxis() > costs.numRequests();
+		this.workers = Math.min(costs.numTaxis(), costs.numRequests());
+		this.jobs = Math.max(costs.numTaxis(), costs.numRequests());
+
+		labelByWorker = new double[workers];
+		labelByJob = new double[jobs];
+		jobByWorker = new int[workers];
+		workerByJob = new int[jobs];
+
+		minSlackByJob = new double[jobs];
+		previousJob = new int[jobs];
+		committedJobs = new boolean[jobs];
+	}
+
+	/**
+	 * Execute the algorithm.
+	 *
+	 * @return The request matched to each taxi. A value of -1 means the taxi
+	 *         is unmatched (only when there are more taxis than requests).
+	 */
+	public int[] execute() {
+		Arrays.fill(labelByJob, 0.0);
+		Arrays.fill(jobByWorker, -1);
+		Arrays.fill(workerByJob, -1);
+		numPhases = 0;
+
+		greedyMatch();
+		if (listener != null) {
+			listener.onRelaxations((long) workers * jobs);
+			for (int w = 0; w < workers; w++) {
+				if (jobByWorker[w] != -1) {
+					listener.onAugmentation(1);
+				}
+			}
+		}
+		for (int w = 0; w < workers; w++) {
+			if (jobByWorker[w] == -1) {
+				executePhase(w);
+				numPhases++;
+			}
+		}
+
+		int[] result = new int[costs.numTaxis()];
+		totalCost = 0;
+		if (transposed) {
+			Arrays.fill(result, -1);
+			for (int w = 0; w < workers; w++) {
+				result[jobByWorker[w]] = w;
+			}
+		} else {
+			System.arraycopy(jobByWorker, 0, result, 0, workers);
+		}
+		for (int i = 0; i < result.length; i++) {
+			if (result[i] != -1) {
+				totalCost += costs.cost(i, result[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Labels every worker with its smallest cost, and every job with 0, then
+	 * matches each worker to the first of its cheapest jobs if that job is
+	 * still free. Both are done in one scan of the costs.
+	 */
+	private void greedyMatch() {
+		for (int w = 0; w < workers; w++) {
+			double min = Double.POSITIVE_INFINITY;
+			double minFree = Double.POSITIVE_INFINITY;
+			int minFreeJob = -1;
+			for (int j = 0; j < jobs; j++) {
+				double cost = cost(w, j);
+				if (cost < min) {
+					min = cost;
+				}
+				if (cost < minFree && workerByJob[j] == -1) {
+					minFree = cost;
+					minFreeJob = j;
+				}
+			}
+
+			labelByWorker[w] = min;
+			if (minFreeJob != -1 && minFree == min) {
+				match(w, minFreeJob);
+			}
+		}
+	}
+
+	/**
+	 * Grows the matching by one along the shortest augmenting path from a
+	 * free worker, found over the reduced costs
+	 *
+	 * <pre>
+	 * cost(w, j) - labelByWorker[w] - labelByJob[j]
+	 * </pre>
+	 *
+	 * The slack of each uncommitted job is the smallest reduced cost from a
+	 * committed worker, so every step is a linear scan over the jobs. The
+	 * labels are shifted by the smallest slack at every step, which keeps the
+	 * labeling feasible and makes the edges of the path tight. Only committed
+	 * jobs have their labels lowered and they all end up matched, so the
+	 * labels of the free jobs stay 0 as rectangular costs require.
+	 *
+	 * @param root
+	 *            The free worker to augment from
+	 */
+	private void executePhase(int root) {
+		Arrays.fill(minSlackByJob, Double.POSITIVE_INFINITY);
+		Arrays.fill(committedJobs, false);
+
+		int worker = root;
+		int job = -1;
+		int freeJob = -1;
+		int steps = 0;
+
+		while (freeJob == -1) {
+			steps++;
+			double delta = Double.POSITIVE_INFINITY;
+			int nextJob = -1;
+
+			for (int j = 0; j < jobs; j++) {
+				if (committedJobs[j]) {
+					continue;
+				}
+
+				double slack = cost(worker, j) - labelByWorker[worker] - labelByJob[j];
+				if (slack < minSlackByJob[j]) {
+					minSlackByJob[j] = slack;
+					previousJob[j] = job;
+				}
+				if (minSlackByJob[j] < delta) {
+					delta = minSlackByJob[j];
+					nextJob = j;
+				}
+			}
+
+			labelByWorker[root] += delta;
+			for (int j = 0; j < jobs; j++) {
+				if (committedJobs[j]) {
+					labelByWorker[workerByJob[j]] += delta;
+					labelByJob[j] -= delta;
+				} else {
+					minSlackByJob[j] -= delta;
+				}
+			}
+
+			committedJobs[nextJob] = true;
+			if (workerByJob[nextJob] == -1) {
+				freeJob = nextJob;
+			} else {
+				worker = workerByJob[nextJob];
+				job = nextJob;
+			}
+		}
+
+		// Flip the matching along the path, from the free job back to the
+		// root
+		int pathJobs = 0;
+		for (int j = freeJob; j != -1;) {
+			int previous = previousJob[j];
+			match(previous == -1 ? root : workerByJob[previous], j);
+			j = previous;
+			pathJobs++;
+		}
+
+		// Step k of the phase scanned the jobs - k jobs not yet committed
+		if (listener != null) {
+			listener.onRelaxations((long) steps * jobs - (long) steps * (steps - 1) / 2);
+			listener.onAugmentation(2 * pathJobs - 1);
+		}
+	}
+
+	private void match(int w, int j) {
+		jobByWorker[w] = j;
+		workerByJob[j] = w;
+	}
+
+	/**
+	 * Sets the listener told about every augmentation and the relaxations of
+	 * its search.
+	 *
+	 * @param listener
+	 *            The listener, or null for none
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Cost between worker w and job j, reading the oracle transposed if the
+	 * workers are the requests.
+	 */
+	private double cost(int w, int j) {
+		return transposed ? costs.cost(j, w) : costs.cost(w, j);
+	}
+
+	/**
+	 * Getters
+	 */
+
+	/**
+	 * @return The total cost of the last matching found
+	 */
+	public double getTotalCost() {
+		return totalCost;
+	}
+
+	/**
+	 * Sum of the labels, a lower bound on the cost of every matching. After
+	 * {@link #execute()} it equals the cost of the matching found (up to
+	 * rounding), which certifies it as optimal.
+	 *
+	 * @return The value of the dual solution given by the labels
+	 */
+	public double getDualBound() {
+		double bound = 0;
+		for (double label : labelByWorker) {
+			bound += label;
+		}
+		for (double label : labelByJob) {
+			bound += label;
+		}
+		return bound;
+	}
+
+	/**
+	 * @return The number of phases the last execution needed after the
+	 *         greedy match
+	 */
+	public int getNumPhases() {
+		return numPhases;
+	}
+}
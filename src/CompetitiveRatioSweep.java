@@ -0,0 +1,140 @@
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Measures the competitive ratios of the online and greedy algorithms over a
+ * range of constants, in parallel. Every (constant, trial) pair is a cell
+ * that runs the online algorithm on the destination order of its trial, and
+ * every trial also runs the greedy algorithm once (it does not depend on the
+ * constant). The cells are fork/join tasks.
+ * <p>
+ *
+ * The {@link MatchingInstance} and the offline optimum are computed once and
+ * shared by every cell, and each cell solves with a stateless
+ * {@link MatchingSolver}, so nothing a cell does is seen by another. The
+ * destination orders are given up front, so a seeded sweep gives the same
+ * ratios whatever the number of threads.
+ */
+public class CompetitiveRatioSweep {
+
+	private final MatchingInstance instance;
+	private final double[] constants;
+	private final ArrayList<ArrayList<Integer>> destinationOrders;
+
+	private double offlineCost;
+
+	// Cost of every cell, by constant then trial, and of greedy by trial
+	private final double[][] onlineCosts;
+	private final double[] greedyCosts;
+
+	/**
+	 * Prepares a sweep.
+	 *
+	 * @param instance
+	 *            The data set, with its dense cost matrix
+	 * @param constants
+	 *            The constants to measure
+	 * @param destinationOrders
+	 *            The destination order of each trial, see
+	 *            {@link BellmanFord#permuteDestinations(int)}
+	 * @throws IllegalArgumentException
+	 *             If there is no trial, since no ratio can be averaged
+	 */
+	public CompetitiveRatioSweep(MatchingInstance instance, double[] constants,
+			ArrayList<ArrayList<Integer>> destinationOrders) {
+		if (destinationOrders.isEmpty()) {
+			throw new IllegalArgumentException("A sweep needs at least one trial");
+		}
+		this.instance = instance;
+		this.constants = constants;
+		this.destinationOrders = destinationOrders;
+
+		onlineCosts = new double[constants.length][destinationOrders.size()];
+		greedyCosts = new double[destinationOrders.size()];
+	}
+
+	/**
+	 * Computes the offline optimum, then every cell in parallel.
+	 */
+	public void run() {
+		offlineCost = new MatchingSolver("offline").solve(instance, null);
+
+		int trials = destinationOrders.size();
+		SharedPool.invoke(new Cells(0, (constants.length + 1) * trials));
+	}
+
+	/**
+	 * Runs cell k: the online algorithm for constant k / trials and trial
+	 * k % trials, or the greedy algorithm of trial k % trials for the cells
+	 * after the last constant.
+	 */
+	private void runCell(int k) {
+		int trials = destinationOrders.size();
+		int c = k / trials;
+		int t = k % trials;
+
+		if (c < constants.length) {
+			onlineCosts[c][t] = new MatchingSolver("online").withConstant(constants[c]).solve(
+					instance, destinationOrders.get(t));
+		} else {
+			greedyCosts[t] = new MatchingSolver("greedy").solve(instance, destinationOrders.get(t));
+		}
+	}
+
+	/**
+	 * Runs the cells [lo, hi).
+	 */
+	private class Cells extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int lo, hi;
+
+		private Cells(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo == 1) {
+				runCell(lo);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Cells(lo, mid), new Cells(mid, hi));
+		}
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public double getOfflineCost() {
+		return offlineCost;
+	}
+
+	/**
+	 * @return The online cost over the offline cost of each constant,
+	 *         averaged over the trials
+	 */
+	public double[] getOnlineRatios() {
+		double[] ratios = new double[constants.length];
+		for (int c = 0; c < constants.length; c++) {
+			for (double cost : onlineCosts[c]) {
+				ratios[c] += cost / offlineCost / onlineCosts[c].length;
+			}
+		}
+		return ratios;
+	}
+
+	/**
+	 * @return The greedy cost over the offline cost, averaged over the trials
+	 */
+	public double getGreedyRatio() {
+		double ratio = 0;
+		for (double cost : greedyCosts) {
+			ratio += cost / offlineCost / greedyCosts.length;
+		}
+		return ratio;
+	}
+}
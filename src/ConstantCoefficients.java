@@ -0,0 +1,21 @@
+/**
+ * The same coefficient, the constant of the online algorithm, for every edge.
+ */
+public class ConstantCoefficients implements CoefficientStrategy {
+
+	private final double constant;
+
+	/**
+	 * Creates the strategy
+	 * 
+	 * @param constant
+	 *            The coefficient of every edge
+	 */
+	public ConstantCoefficients(double constant) {
+		this.constant = constant;
+	}
+
+	public double coefficient(int taxi, int request) {
+		return constant;
+	}
+}
@@ -0,0 +1,160 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds the dense cost matrix between two {@link PointSet}s in parallel. The
+ * rows are split into blocks that run as fork/join tasks, and each block fills
+ * its rows in a tight loop over the columns.
+ * <p>
+ *
+ * For the Haversine metric the latitude and longitude of every point are
+ * converted to radians, and the cosine of the latitude is computed, once per
+ * point instead of once per cell. The inner loop then only needs the sines of
+ * the two half differences and the final atan2.
+ */
+public class CostMatrixBuilder {
+
+	// Rows below this count are filled by a single task
+	private static final int BLOCK_ROWS = 64;
+
+	/**
+	 * Builds the cost matrix.
+	 *
+	 * @param taxis
+	 *            Set A points (rows)
+	 * @param requests
+	 *            Set B points (columns)
+	 * @return Cost matrix of the distances, using the metric of the taxis
+	 */
+	public static double[][] build(PointSet taxis, PointSet requests) {
+		double[][] costMatrix = new double[taxis.size()][];
+		if (taxis.size() == 0) {
+			return costMatrix;
+		}
+
+		RecursiveAction task;
+		if (taxis.getMetric() == Metric.HAVERSINE) {
+			task = new HaversineRows(new Radians(taxis), new Radians(requests), costMatrix, 0,
+					costMatrix.length);
+		} else {
+			task = new MetricRows(taxis, requests, costMatrix, 0, costMatrix.length);
+		}
+		SharedPool.invoke(task);
+		return costMatrix;
+	}
+
+	/**
+	 * Latitude and longitude in radians and the cosine of the latitude of
+	 * every point of a set.
+	 */
+	private static class Radians {
+		private final double[] lat, lon, cosLat;
+
+		private Radians(PointSet points) {
+			int n = points.size();
+			lat = new double[n];
+			lon = new double[n];
+			cosLat = new double[n];
+			for (int i = 0; i < n; i++) {
+				lat[i] = points.getX(i) * Math.PI / 180;
+				lon[i] = points.getY(i) * Math.PI / 180;
+				cosLat[i] = Math.cos(lat[i]);
+			}
+		}
+	}
+
+	/**
+	 * Fills the rows [lo, hi) with Haversine distances.
+	 */
+	private static class HaversineRows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Radians taxis, requests;
+		private final double[][] costMatrix;
+		private final int lo, hi;
+
+		private HaversineRows(Radians taxis, Radians requests, double[][] costMatrix, int lo,
+				int hi) {
+			this.taxis = taxis;
+			this.requests = requests;
+			this.costMatrix = costMatrix;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > BLOCK_ROWS) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new HaversineRows(taxis, requests, costMatrix, lo, mid),
+						new HaversineRows(taxis, requests, costMatrix, mid, hi));
+				return;
+			}
+
+			final int R = 6371; // Radius of the earth
+			double[] lat = requests.lat;
+			double[] lon = requests.lon;
+			double[] cosLat = requests.cosLat;
+			int cols = lat.length;
+
+			for (int i = lo; i < hi; i++) {
+				double lat1 = taxis.lat[i];
+				double lon1 = taxis.lon[i];
+				double cosLat1 = taxis.cosLat[i];
+				double[] row = new double[cols];
+
+				for (int j = 0; j < cols; j++) {
+					double sinLat = Math.sin((lat[j] - lat1) / 2);
+					double sinLon = Math.sin((lon[j] - lon1) / 2);
+					double a = sinLat * sinLat + cosLat1 * cosLat[j] * sinLon * sinLon;
+					row[j] = R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+				}
+				costMatrix[i] = row;
+			}
+		}
+	}
+
+	/**
+	 * Fills the rows [lo, hi) with the distances of the taxis' metric.
+	 */
+	private static class MetricRows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final PointSet taxis, requests;
+		private final double[][] costMatrix;
+		private final int lo, hi;
+
+		private MetricRows(PointSet taxis, PointSet requests, double[][] costMatrix, int lo, int hi) {
+			this.taxis = taxis;
+			this.requests = requests;
+			this.costMatrix = costMatrix;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > BLOCK_ROWS) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new MetricRows(taxis, requests, costMatrix, lo, mid),
+						new MetricRows(taxis, requests, costMatrix, mid, hi));
+				return;
+			}
+
+			Metric metric = taxis.getMetric();
+			double[] x = requests.getX();
+			double[] y = requests.getY();
+			int cols = x.length;
+
+			for (int i = lo; i < hi; i++) {
+				double x1 = taxis.getX(i);
+				double y1 = taxis.getY(i);
+				double[] row = new double[cols];
+
+				for (int j = 0; j < cols; j++) {
+					row[j] = metric.distance(x1, y1, x[j], y[j]);
+				}
+				costMatrix[i] = row;
+			}
+		}
+	}
+}
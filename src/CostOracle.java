@@ -0,0 +1,28 @@
+/**
+ * Source of the cost between a taxi (Set A) and a request (Set B). Matchers
+ * ask for costs one edge at a time, so an implementation is free to store
+ * every cost or to compute them on demand.
+ */
+public interface CostOracle {
+
+	/**
+	 * Cost of matching a taxi to a request.
+	 * 
+	 * @param taxi
+	 *            Index of the taxi, 0 <= taxi < numTaxis()
+	 * @param request
+	 *            Index of the request, 0 <= request < numRequests()
+	 * @return The cost of the edge between them
+	 */
+	double cost(int taxi, int request);
+
+	/**
+	 * @return The number of taxis (nodes in set A)
+	 */
+	int numTaxis();
+
+	/**
+	 * @return The number of requests (nodes in set B)
+	 */
+	int numRequests();
+}
@@ -0,0 +1,64 @@
+/**
+ * The outcome of a single request handled by an {@link OnlineSession}.
+ */
+public class Dispatch {
+
+	private final int taxi;
+	private final int request;
+	private final double cost;
+	private final int[] path;
+	private final long latency;
+
+	/**
+	 * Creates a dispatch decision
+	 * 
+	 * @param taxi
+	 *            Index of the free taxi that was sent (Set A)
+	 * @param request
+	 *            Destination index of the request (Set B)
+	 * @param cost
+	 *            Original cost between the taxi and the request
+	 * @param path
+	 *            Vertices of the augmenting path from the taxi to the request
+	 * @param latency
+	 *            Time taken to handle the request in nanoseconds
+	 */
+	public Dispatch(int taxi, int request, double cost, int[] path, long latency) {
+		this.taxi = taxi;
+		this.request = request;
+		this.cost = cost;
+		this.path = path;
+		this.latency = latency;
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public int getTaxi() {
+		return taxi;
+	}
+
+	public int getRequest() {
+		return request;
+	}
+
+	public double getCost() {
+		return cost;
+	}
+
+	public int[] getPath() {
+		return path;
+	}
+
+	public long getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns a string representation of a Dispatch
+	 */
+	public String toString() {
+		return cost + ": (" + taxi + ", " + request + ") in " + latency + "ns";
+	}
+}
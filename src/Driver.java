@@ -54,6 +54,7 @@ public class Driver {
 
 		// BELLMAN
 		BellmanFord bell = new BellmanFord();
+		MatchingMetrics metrics = new MatchingMetrics();
 
 		bell.setConstant(constant);
 		bell.generateCostMatrix(dataSource, numNodes);
@@ -61,9 +62,17 @@ public class Driver {
 		ArrayList<Integer> destinationOrder = bell.permuteDestinations(numNodes);
 		System.out.println("Destination Index Order: " + destinationOrder.toString());
 
+		// Counters are only collected once the data set is generated
+		bell.setListener(metrics);
+
 		double offlineCost = bell.execute(numNodes, "offline", destinationOrder);
+		System.out.println("OFFLINE METRICS: " + metrics);
+		metrics.reset();
 		double onlineCost = bell.execute(numNodes, "online", destinationOrder);
+		System.out.println("ONLINE METRICS: " + metrics);
+		metrics.reset();
 		double onlineGreedyCost = bell.execute(numNodes, "greedy", destinationOrder);
+		System.out.println("GREEDY METRICS: " + metrics);
 
 		System.out.println("OFFLINE COST: " + offlineCost);
 		System.out.println("ONLINE COST: " + onlineCost);
@@ -89,7 +98,8 @@ public class Driver {
 	/**
 	 * Execute multiple runs (5) for each coefficient in the "coefficients"
 	 * array and store the average online and greedy competitive ratios for each
-	 * coefficient.
+	 * coefficient. Each run uses its own destination order, and the runs of
+	 * every coefficient go on in parallel (see {@link CompetitiveRatioSweep}).
 	 * 
 	 * @param numNodes
 	 *            Number of nodes/vertices in Set A.
@@ -109,30 +119,25 @@ public class Driver {
 		Calendar cal = Calendar.getInstance();
 		System.out.println("Start: " + dateFormat.format(cal.getTime()));
 
-		Double[] coefficients = { 1.0, 1.5, 2.0, 2.5, 3.0, 3.5, 4.0, 5.0, 10.0, 25.0 };
+		double[] coefficients = { 1.0, 1.5, 2.0, 2.5, 3.0, 3.5, 4.0, 5.0, 10.0, 25.0 };
 
 		BellmanFord bell = new BellmanFord();
-
-		ArrayList<Integer> destinationOrder = bell.permuteDestinations(numNodes);
 		bell.generateCostMatrix(dataSource, numNodes);
 
-		double offlineCost = bell.execute(numNodes, "offline", destinationOrder);
-		double onlineGreedyCost = bell.execute(numNodes, "greedy", destinationOrder);
-
-		for (int i = 0; i < coefficients.length; i++) {
-			bell.setConstant(coefficients[i]);
-			double competetiveRatioOnline = 0;
-			double competetiveRatioGreedy = 0;
-
-			for (int j = 0; j < 5; j++) {
-				double onlineCost = bell.execute(numNodes, "online", destinationOrder);
+		ArrayList<ArrayList<Integer>> destinationOrders = new ArrayList<ArrayList<Integer>>();
+		for (int j = 0; j < 5; j++) {
+			destinationOrders.add(bell.permuteDestinations(numNodes));
+		}
 
-				competetiveRatioOnline += onlineCost / offlineCost;
-				competetiveRatioGreedy += onlineGreedyCost / offlineCost;
-			}
+		CompetitiveRatioSweep sweep = new CompetitiveRatioSweep(bell.getInstance(), coefficients,
+				destinationOrders);
+		sweep.run();
 
-			System.out.print(competetiveRatioOnline / 5 + "\t");
-			System.out.print(competetiveRatioGreedy / 5 + "\t");
+		double[] onlineRatios = sweep.getOnlineRatios();
+		double greedyRatio = sweep.getGreedyRatio();
+		for (int i = 0; i < coefficients.length; i++) {
+			System.out.print(onlineRatios[i] + "\t");
+			System.out.print(greedyRatio + "\t");
 			System.out.println();
 		}
 
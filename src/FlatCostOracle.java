@@ -0,0 +1,42 @@
+/**
+ * Cost oracle backed by a cost matrix stored row major in a single array, so
+ * there is no array object (and header) per row.
+ */
+public class FlatCostOracle implements CostOracle {
+
+	private final double[] costs;
+	private final int rows, cols;
+
+	/**
+	 * Wraps a row major cost matrix
+	 *
+	 * @param costs
+	 *            The costs, where costs[i * cols + j] holds the cost between
+	 *            taxi i and request j
+	 * @param rows
+	 *            Number of taxis
+	 * @param cols
+	 *            Number of requests
+	 */
+	public FlatCostOracle(double[] costs, int rows, int cols) {
+		if (costs.length != (long) rows * cols) {
+			throw new IllegalArgumentException("Expected " + (long) rows * cols + " costs, got "
+					+ costs.length);
+		}
+		this.costs = costs;
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	public double cost(int taxi, int request) {
+		return costs[taxi * cols + request];
+	}
+
+	public int numTaxis() {
+		return rows;
+	}
+
+	public int numRequests() {
+		return cols;
+	}
+}
@@ -0,0 +1,343 @@
+/**
+ * Static k-d tree over a fixed set of points that supports nearest neighbor
+ * queries and deletion. The tree is stored implicitly: the node covering slots
+ * [lo, hi) keeps its point in the middle slot and its two subtrees in the
+ * halves on each side, so no node objects are allocated. Every node counts the
+ * points still alive below it, which lets queries skip emptied subtrees.
+ */
+public class KdTree {
+
+	private final int k;
+	private final boolean manhattan;
+	private final int n;
+
+	// Coordinates of the point in each slot, one array per dimension
+	private final double[][] coords;
+
+	private final int[] pointAt;
+	private final int[] slotOf;
+
+	// Points still in the subtree of the node whose middle slot is the index
+	private final int[] alive;
+	private final boolean[] removed;
+
+	// Best candidate of the current query
+	private int bestSlot;
+	private double bestDistance;
+
+	// Candidates of the current k nearest query, a max heap on (distance,
+	// point) so the worst candidate is at the root
+	private int[] heapSlots = new int[0];
+	private double[] heapDistances = new double[0];
+	private int heapSize;
+
+	/**
+	 * Builds the tree.
+	 *
+	 * @param points
+	 *            Coordinates of the points, points[d][i] is coordinate d of
+	 *            point i
+	 * @param manhattan
+	 *            True to compare points with Manhattan distance, false for
+	 *            straight line distance
+	 */
+	public KdTree(double[][] points, boolean manhattan) {
+		this.k = points.length;
+		this.manhattan = manhattan;
+		this.n = points[0].length;
+
+		pointAt = new int[n];
+		for (int i = 0; i < n; i++) {
+			pointAt[i] = i;
+		}
+		build(points, 0, n, 0);
+
+		coords = new double[k][n];
+		slotOf = new int[n];
+		for (int slot = 0; slot < n; slot++) {
+			slotOf[pointAt[slot]] = slot;
+			for (int d = 0; d < k; d++) {
+				coords[d][slot] = points[d][pointAt[slot]];
+			}
+		}
+
+		alive = new int[n];
+		removed = new boolean[n];
+		count(0, n);
+	}
+
+	/**
+	 * Orders the slots [lo, hi) so the median along the node's axis sits in
+	 * the middle slot, then does the same for both halves.
+	 */
+	private void build(double[][] points, int lo, int hi, int depth) {
+		if (hi - lo <= 1) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		select(points[depth % k], lo, hi - 1, mid);
+		build(points, lo, mid, depth + 1);
+		build(points, mid + 1, hi, depth + 1);
+	}
+
+	/**
+	 * Quickselect on the slots [lo, hi] by coordinate values.
+	 */
+	private void select(double[] values, int lo, int hi, int kth) {
+		while (hi > lo) {
+			double pivot = values[pointAt[(lo + hi) >>> 1]];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (values[pointAt[i]] < pivot) {
+					i++;
+				}
+				while (values[pointAt[j]] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int temp = pointAt[i];
+					pointAt[i] = pointAt[j];
+					pointAt[j] = temp;
+					i++;
+					j--;
+				}
+			}
+			if (kth <= j) {
+				hi = j;
+			} else if (kth >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private int count(int lo, int hi) {
+		if (hi <= lo) {
+			return 0;
+		}
+		int mid = (lo + hi) >>> 1;
+		alive[mid] = hi - lo;
+		count(lo, mid);
+		count(mid + 1, hi);
+		return alive[mid];
+	}
+
+	/**
+	 * Finds the closest point that has not been removed. Ties go to the point
+	 * with the lowest index.
+	 *
+	 * @param query
+	 *            Coordinates of the query, one value per dimension
+	 * @return Index of the nearest point, or -1 if the tree is empty
+	 */
+	public int nearest(double[] query) {
+		bestSlot = -1;
+		bestDistance = Double.POSITIVE_INFINITY;
+		search(query, 0, n, 0);
+		return bestSlot == -1 ? -1 : pointAt[bestSlot];
+	}
+
+	private void search(double[] query, int lo, int hi, int depth) {
+		if (hi <= lo) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (alive[mid] == 0) {
+			return;
+		}
+
+		if (!removed[mid]) {
+			double distance = distance(query, mid);
+			if (distance < bestDistance
+					|| (distance == bestDistance && pointAt[mid] < pointAt[bestSlot])) {
+				bestDistance = distance;
+				bestSlot = mid;
+			}
+		}
+
+		int axis = depth % k;
+		double diff = query[axis] - coords[axis][mid];
+
+		// Visit the side of the query first, the other side only if it can
+		// still hold a point at least as close
+		if (diff < 0) {
+			search(query, lo, mid, depth + 1);
+			if (bound(diff) <= bestDistance) {
+				search(query, mid + 1, hi, depth + 1);
+			}
+		} else {
+			search(query, mid + 1, hi, depth + 1);
+			if (bound(diff) <= bestDistance) {
+				search(query, lo, mid, depth + 1);
+			}
+		}
+	}
+
+	/**
+	 * Finds the closest points that have not been removed, closest first. Ties
+	 * go to the points with the lowest index.
+	 *
+	 * @param query
+	 *            Coordinates of the query, one value per dimension
+	 * @param count
+	 *            Number of points to find
+	 * @return Indices of the nearest points, fewer than count if the tree has
+	 *         fewer points left
+	 */
+	public int[] nearest(double[] query, int count) {
+		if (heapSlots.length < count) {
+			heapSlots = new int[count];
+			heapDistances = new double[count];
+		}
+		heapSize = 0;
+		if (count > 0) {
+			search(query, 0, n, 0, count);
+		}
+
+		// Pop the heap from the worst candidate down
+		int[] result = new int[heapSize];
+		for (int k = heapSize - 1; k >= 0; k--) {
+			result[k] = pointAt[heapSlots[0]];
+			heapSize--;
+			heapSlots[0] = heapSlots[heapSize];
+			heapDistances[0] = heapDistances[heapSize];
+			siftDown(0);
+		}
+		return result;
+	}
+
+	private void search(double[] query, int lo, int hi, int depth, int count) {
+		if (hi <= lo) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (alive[mid] == 0) {
+			return;
+		}
+
+		if (!removed[mid]) {
+			double distance = distance(query, mid);
+			if (heapSize < count) {
+				heapSlots[heapSize] = mid;
+				heapDistances[heapSize] = distance;
+				siftUp(heapSize++);
+			} else if (worse(heapDistances[0], heapSlots[0], distance, mid)) {
+				heapSlots[0] = mid;
+				heapDistances[0] = distance;
+				siftDown(0);
+			}
+		}
+
+		int axis = depth % k;
+		double diff = query[axis] - coords[axis][mid];
+
+		if (diff < 0) {
+			search(query, lo, mid, depth + 1, count);
+			if (heapSize < count || bound(diff) <= heapDistances[0]) {
+				search(query, mid + 1, hi, depth + 1, count);
+			}
+		} else {
+			search(query, mid + 1, hi, depth + 1, count);
+			if (heapSize < count || bound(diff) <= heapDistances[0]) {
+				search(query, lo, mid, depth + 1, count);
+			}
+		}
+	}
+
+	/**
+	 * Whether candidate a is further from the query than candidate b.
+	 */
+	private boolean worse(double distanceA, int slotA, double distanceB, int slotB) {
+		return distanceA > distanceB || (distanceA == distanceB && pointAt[slotA] > pointAt[slotB]);
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!worse(heapDistances[i], heapSlots[i], heapDistances[parent], heapSlots[parent])) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize
+					&& worse(heapDistances[child + 1], heapSlots[child + 1], heapDistances[child],
+							heapSlots[child])) {
+				child++;
+			}
+			if (!worse(heapDistances[child], heapSlots[child], heapDistances[i], heapSlots[i])) {
+				return;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int slot = heapSlots[i];
+		heapSlots[i] = heapSlots[j];
+		heapSlots[j] = slot;
+		double distance = heapDistances[i];
+		heapDistances[i] = heapDistances[j];
+		heapDistances[j] = distance;
+	}
+
+	/**
+	 * Distance between the query and the point in a slot. Straight line
+	 * distances are left squared since only their order matters.
+	 */
+	private double distance(double[] query, int slot) {
+		double sum = 0;
+		for (int d = 0; d < k; d++) {
+			double diff = query[d] - coords[d][slot];
+			sum += manhattan ? Math.abs(diff) : diff * diff;
+		}
+		return sum;
+	}
+
+	private double bound(double diff) {
+		return manhattan ? Math.abs(diff) : diff * diff;
+	}
+
+	/**
+	 * Removes a point from the tree.
+	 *
+	 * @param point
+	 *            Index of the point to remove
+	 */
+	public void remove(int point) {
+		int slot = slotOf[point];
+		if (removed[slot]) {
+			return;
+		}
+		removed[slot] = true;
+
+		int lo = 0;
+		int hi = n;
+		while (true) {
+			int mid = (lo + hi) >>> 1;
+			alive[mid]--;
+			if (mid == slot) {
+				break;
+			} else if (slot < mid) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of points left in the tree.
+	 */
+	public int size() {
+		return n == 0 ? 0 : alive[n >>> 1];
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Heuristic coefficients for points on a line: an edge costs more when the
+ * taxi is right of the request (at the same x or beyond) than when it is to
+ * its left. The coefficient is computed from the x coordinates of the two
+ * points every time it is asked for.
+ */
+public class LineCoefficients implements CoefficientStrategy {
+
+	// Coefficients used by the 1D experiments
+	private static final double LEFT = 3;
+	private static final double RIGHT = 6;
+
+	private final PointSet taxis;
+	private final PointSet requests;
+	private final double left, right;
+
+	/**
+	 * Creates the strategy with a coefficient of 3 for taxis left of their
+	 * request and 6 otherwise.
+	 * 
+	 * @param taxis
+	 *            Set A locations
+	 * @param requests
+	 *            Set B locations
+	 */
+	public LineCoefficients(PointSet taxis, PointSet requests) {
+		this(taxis, requests, LEFT, RIGHT);
+	}
+
+	/**
+	 * Creates the strategy.
+	 * 
+	 * @param taxis
+	 *            Set A locations
+	 * @param requests
+	 *            Set B locations
+	 * @param left
+	 *            Coefficient of a taxi left of its request
+	 * @param right
+	 *            Coefficient of a taxi at or right of its request
+	 */
+	public LineCoefficients(PointSet taxis, PointSet requests, double left, double right) {
+		this.taxis = taxis;
+		this.requests = requests;
+		this.left = left;
+		this.right = right;
+	}
+
+	public double coefficient(int taxi, int request) {
+		return taxis.getX(taxi) < requests.getX(request) ? left : right;
+	}
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Cost oracle backed by a row major cost matrix in a memory mapped file (see
+ * {@link TripCache}). Costs are read from the mapping when asked for, so the
+ * matrix is never copied onto the heap. A single mapping holds at most 2 GB,
+ * so large matrices are mapped as several blocks of whole rows.
+ */
+public class MappedCostOracle implements CostOracle {
+
+	// Largest mapping, in doubles
+	private static final int MAX_BLOCK = 1 << 27;
+
+	private final int rows, cols;
+	private final int rowsPerBlock;
+	private final DoubleBuffer[] blocks;
+
+	/**
+	 * Maps a cost matrix stored in a file.
+	 *
+	 * @param channel
+	 *            The file, only needed while the constructor runs
+	 * @param offset
+	 *            Position of the first cost in the file
+	 * @param rows
+	 *            Number of taxis
+	 * @param cols
+	 *            Number of requests
+	 * @throws IOException
+	 *             If the file cannot be mapped
+	 */
+	public MappedCostOracle(FileChannel channel, long offset, int rows, int cols)
+			throws IOException {
+		this.rows = rows;
+		this.cols = cols;
+		this.rowsPerBlock = Math.max(1, MAX_BLOCK / Math.max(cols, 1));
+
+		blocks = new DoubleBuffer[(rows + rowsPerBlock - 1) / rowsPerBlock];
+		for (int b = 0; b < blocks.length; b++) {
+			int blockRows = Math.min(rowsPerBlock, rows - b * rowsPerBlock);
+			long position = offset + 8L * b * rowsPerBlock * cols;
+			blocks[b] = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * blockRows * cols)
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		}
+	}
+
+	public double cost(int taxi, int request) {
+		return blocks[taxi / rowsPerBlock].get((taxi % rowsPerBlock) * cols + request);
+	}
+
+	public int numTaxis() {
+		return rows;
+	}
+
+	public int numRequests() {
+		return cols;
+	}
+}
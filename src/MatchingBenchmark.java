@@ -0,0 +1,211 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Benchmarks {@link BellmanFord#execute(int, String, ArrayList)} for every
+ * algorithm and data source.
+ * <p>
+ *
+ * For each data source and size one instance is generated from a fixed seed
+ * (see {@link BellmanFord#setSeed(long)}) and reused by every algorithm, so
+ * every run of the benchmark measures the same instances. Each algorithm runs
+ * a number of warmup iterations, then is timed over the measured iterations.
+ * The report gives the average and best time per operation, the bytes
+ * allocated per operation and the cost found (which must not change between
+ * two runs of the same instance). The batch algorithm also reports the number
+ * of windows and their average and largest latency.
+ * <p>
+ *
+ * Allocations are counted with the per thread allocation counter of the
+ * HotSpot ThreadMXBean, so memory allocated by fork/join worker threads is not
+ * included. Sizes whose first iteration takes longer than the time budget are
+ * only run once and the algorithm is not run on larger sizes of the same
+ * source, data sets with fewer trips than a size are skipped and an
+ * algorithm that throws is reported as failed.
+ *
+ * <pre>
+ * java MatchingBenchmark [sources] [sizes] [types]
+ *
+ * sources - comma separated data sources (default: every source)
+ * sizes   - comma separated numbers of taxis (default: 100,1000,10000)
+ * types   - comma separated algorithms (default: offline,online,greedy,hungarian)
+ * </pre>
+ */
+public class MatchingBenchmark {
+
+	private static final String[] SOURCES = { "synthetic1D", "synthetic2D",
+			"synthetic2DExample1", "synthetic2DExample2", "trip_data_test.csv" };
+	private static final int[] SIZES = { 100, 1000, 10000 };
+	private static final String[] TYPES = { "offline", "online", "greedy", "hungarian" };
+
+	private static final long SEED = 42L;
+
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int MEASURED_ITERATIONS = 5;
+
+	// Iterations slower than this are not repeated (nanoseconds)
+	private static final long TIME_BUDGET = 30L * 1000 * 1000 * 1000;
+
+	// Keeps the results alive so the JIT cannot drop a run
+	private static volatile double sink;
+
+	public static void main(String[] args) {
+		String[] sources = args.length > 0 ? args[0].split(",") : SOURCES;
+		int[] sizes = SIZES;
+		if (args.length > 1) {
+			String[] values = args[1].split(",");
+			sizes = new int[values.length];
+			for (int i = 0; i < values.length; i++) {
+				sizes[i] = Integer.parseInt(values[i]);
+			}
+		}
+		String[] types = args.length > 2 ? args[2].split(",") : TYPES;
+
+		System.out.println(String.format("%-20s %6s %-20s %12s %12s %14s %16s", "source", "n",
+				"type", "avg ms/op", "min ms/op", "alloc MB/op", "cost"));
+
+		for (String source : sources) {
+			// Size at which each algorithm went over the time budget
+			HashMap<String, Integer> overBudget = new HashMap<String, Integer>();
+
+			for (int n : sizes) {
+				BellmanFord bell = new BellmanFord();
+				bell.setSeed(SyntheticData.deriveSeed(SEED, n));
+				try {
+					bell.generateCostMatrix(source, n);
+				} catch (IllegalArgumentException e) {
+					System.out.println(String.format("%-20s %6d skipped: %s", source, n,
+							e.getMessage()));
+					continue;
+				} catch (OutOfMemoryError e) {
+					System.out.println(String.format("%-20s %6d skipped: out of memory", source, n));
+					continue;
+				}
+
+				ArrayList<Integer> destinationOrder = bell.permuteDestinations(n);
+
+				for (String type : types) {
+					Integer slowSize = overBudget.get(type);
+					if (slowSize != null && slowSize < n) {
+						System.out.println(String.format("%-20s %6d %-20s skipped: over budget at n=%d",
+								source, n, type, slowSize));
+					} else if (!run(bell, source, n, type, destinationOrder)) {
+						overBudget.put(type, n);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs and reports one algorithm on one instance.
+	 *
+	 * @return False if the first iteration went over the time budget
+	 */
+	private static boolean run(BellmanFord bell, String source, int n, String type,
+			ArrayList<Integer> destinationOrder) {
+		Measurement first;
+		try {
+			first = measure(bell, n, type, destinationOrder);
+		} catch (RuntimeException e) {
+			System.out.println(String.format("%-20s %6d %-20s failed: %s", source, n, type, e));
+			return true;
+		}
+		Measurement total = new Measurement();
+
+		if (first.nanos > TIME_BUDGET) {
+			total.add(first);
+		} else {
+			for (int i = 1; i < WARMUP_ITERATIONS; i++) {
+				measure(bell, n, type, destinationOrder);
+			}
+			for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+				total.add(measure(bell, n, type, destinationOrder));
+			}
+		}
+
+		System.out.println(String.format("%-20s %6d %-20s %12.3f %12.3f %14.3f %16.6f", source,
+				n, type, total.nanos / 1e6 / total.iterations, total.minNanos / 1e6,
+				total.bytes / 1048576.0 / total.iterations, total.cost));
+		if (type.equals("batch")) {
+			printWindowLatencies(source, n, type, bell.getWindowLatencies());
+		}
+		if (type.equals("offline")) {
+			System.out.println(String.format("%-20s %6d %-20s %d negative cycles canceled",
+					source, n, type, bell.getCanceledCycles()));
+		}
+		return first.nanos <= TIME_BUDGET;
+	}
+
+	/**
+	 * Reports the window latencies of the last iteration of a batch run.
+	 */
+	private static void printWindowLatencies(String source, int n, String type, long[] latencies) {
+		long total = 0;
+		long max = 0;
+		for (long latency : latencies) {
+			total += latency;
+			max = Math.max(max, latency);
+		}
+		System.out.println(String.format("%-20s %6d %-20s %d windows, %.3f avg ms/window, %.3f max ms/window",
+				source, n, type, latencies.length, latencies.length > 0 ? total / 1e6
+						/ latencies.length : 0.0, max / 1e6));
+	}
+
+	/**
+	 * Times a single execution.
+	 */
+	private static Measurement measure(BellmanFord bell, int n, String type,
+			ArrayList<Integer> destinationOrder) {
+		long bytesBefore = allocatedBytes();
+		long start = System.nanoTime();
+		double cost = bell.execute(n, type, destinationOrder);
+		long nanos = System.nanoTime() - start;
+		long bytes = allocatedBytes() - bytesBefore;
+
+		sink += cost;
+
+		Measurement measurement = new Measurement();
+		measurement.iterations = 1;
+		measurement.nanos = nanos;
+		measurement.minNanos = nanos;
+		measurement.bytes = bytes;
+		measurement.cost = cost;
+		return measurement;
+	}
+
+	/**
+	 * Bytes allocated so far by the current thread, or 0 if the JVM does not
+	 * support counting them.
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+			if (hotspot.isThreadAllocatedMemorySupported()) {
+				return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Sum of the measured iterations of one algorithm.
+	 */
+	private static class Measurement {
+		private int iterations;
+		private long nanos;
+		private long minNanos = Long.MAX_VALUE;
+		private long bytes;
+		private double cost;
+
+		private void add(Measurement other) {
+			iterations += other.iterations;
+			nanos += other.nanos;
+			minNanos = Math.min(minNanos, other.minNanos);
+			bytes += other.bytes;
+			cost = other.cost;
+		}
+	}
+}
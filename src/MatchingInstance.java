@@ -0,0 +1,61 @@
+/**
+ * One matching problem: the costs between taxis and requests and their
+ * locations. An instance never changes once created, so any number of
+ * {@link MatchingSolver}s can solve it at the same time.
+ * <p>
+ *
+ * The arrays behind the instance are shared, not copied, and must not be
+ * changed after it is created. Concurrent solves also read the costs from
+ * several threads, which every {@link CostOracle} of the project allows,
+ * including a {@link PointCostOracle} with a cache.
+ */
+public final class MatchingInstance {
+
+	private final CostOracle costs;
+	private final PointSet taxis;
+	private final PointSet requests;
+
+	/**
+	 * Creates an instance. The costs may have a different number of taxis
+	 * and requests, but only some algorithms accept such an instance, see
+	 * {@link BellmanFord#execute(int, String, java.util.ArrayList)}.
+	 *
+	 * @param costs
+	 *            Cost of each taxi/request pair
+	 * @param taxis
+	 *            Set A locations, or null if only the costs are known
+	 * @param requests
+	 *            Set B locations, or null if only the costs are known
+	 */
+	public MatchingInstance(CostOracle costs, PointSet taxis, PointSet requests) {
+		if (costs == null) {
+			throw new IllegalArgumentException("An instance needs costs");
+		}
+		this.costs = costs;
+		this.taxis = taxis;
+		this.requests = requests;
+	}
+
+	/**
+	 * @return The number of taxis (nodes in set A)
+	 */
+	public int numTaxis() {
+		return costs.numTaxis();
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public CostOracle getCosts() {
+		return costs;
+	}
+
+	public PointSet getTaxis() {
+		return taxis;
+	}
+
+	public PointSet getRequests() {
+		return requests;
+	}
+}
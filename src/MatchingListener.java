@@ -0,0 +1,63 @@
+/**
+ * Receives the counters and timers of a matching run, see
+ * {@link BellmanFord#setListener(MatchingListener)}. Every matcher only calls
+ * a listener that was set, so a run without one does no counting or timing
+ * at all.
+ * <p>
+ *
+ * Calls come from the thread running the matcher. A listener shared by
+ * matchers running in parallel has to synchronize itself.
+ */
+public interface MatchingListener {
+
+	/**
+	 * Called after the matching grew along an augmenting path.
+	 * 
+	 * @param pathLength
+	 *            Number of edges on the path, 1 for a direct match
+	 */
+	void onAugmentation(int pathLength);
+
+	/**
+	 * Called after a shortest path search, or after a bidding round of the
+	 * auction.
+	 * 
+	 * @param relaxations
+	 *            Number of edges the search or the bids of the round relaxed
+	 */
+	void onRelaxations(long relaxations);
+
+	/**
+	 * Called after a phase of the auction, which builds a whole matching
+	 * with one epsilon instead of growing it along augmenting paths.
+	 * 
+	 * @param rounds
+	 *            Number of bidding rounds the phase took
+	 */
+	void onPhase(int rounds);
+
+	/**
+	 * Called after a graph was built or rebuilt from the costs.
+	 * 
+	 * @param nanos
+	 *            Time the build took in nanoseconds
+	 */
+	void onGraphBuilt(long nanos);
+
+	/**
+	 * Called after a negative cycle of the residual graph was canceled.
+	 * 
+	 * @param cycleLength
+	 *            Number of edges on the cycle
+	 */
+	void onNegativeCycle(int cycleLength);
+
+	/**
+	 * Called after an online algorithm answered a request.
+	 * 
+	 * @param nanos
+	 *            Time from the arrival of the request to its dispatch in
+	 *            nanoseconds
+	 */
+	void onRequest(long nanos);
+}
@@ -0,0 +1,143 @@
+/**
+ * A {@link MatchingListener} that adds up everything it is told: the number
+ * of augmentations and their path lengths, edge relaxations, auction phases
+ * and their rounds, graph build time, canceled negative cycles and request
+ * latencies.
+ */
+public class MatchingMetrics implements MatchingListener {
+
+	private long augmentations;
+	private long totalPathLength;
+	private int maxPathLength;
+
+	private long relaxations;
+
+	private long phases;
+	private long rounds;
+
+	private long graphBuilds;
+	private long graphBuildNanos;
+
+	private long negativeCycles;
+
+	private long requests;
+	private long totalRequestNanos;
+	private long maxRequestNanos;
+
+	public void onAugmentation(int pathLength) {
+		augmentations++;
+		totalPathLength += pathLength;
+		maxPathLength = Math.max(maxPathLength, pathLength);
+	}
+
+	public void onRelaxations(long relaxations) {
+		this.relaxations += relaxations;
+	}
+
+	public void onPhase(int rounds) {
+		phases++;
+		this.rounds += rounds;
+	}
+
+	public void onGraphBuilt(long nanos) {
+		graphBuilds++;
+		graphBuildNanos += nanos;
+	}
+
+	public void onNegativeCycle(int cycleLength) {
+		negativeCycles++;
+	}
+
+	public void onRequest(long nanos) {
+		requests++;
+		totalRequestNanos += nanos;
+		maxRequestNanos = Math.max(maxRequestNanos, nanos);
+	}
+
+	/**
+	 * Sets every counter back to 0, e.g. between two runs.
+	 */
+	public void reset() {
+		augmentations = 0;
+		totalPathLength = 0;
+		maxPathLength = 0;
+		relaxations = 0;
+		phases = 0;
+		rounds = 0;
+		graphBuilds = 0;
+		graphBuildNanos = 0;
+		negativeCycles = 0;
+		requests = 0;
+		totalRequestNanos = 0;
+		maxRequestNanos = 0;
+	}
+
+	/**
+	 * @return The counters on one line, times in milliseconds
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d augmentations (%.2f avg, %d max edges), %d relaxations, "
+				+ "%d phases (%d rounds), %d graph builds (%.3f ms), %d negative cycles, "
+				+ "%d requests (%.3f avg, %.3f max ms)", augmentations, getAveragePathLength(),
+				maxPathLength, relaxations, phases, rounds, graphBuilds, graphBuildNanos / 1e6,
+				negativeCycles, requests, requests > 0 ? totalRequestNanos / 1e6 / requests
+						: 0.0, maxRequestNanos / 1e6);
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public long getAugmentations() {
+		return augmentations;
+	}
+
+	/**
+	 * @return The average number of edges on an augmenting path, 0 if there
+	 *         was none
+	 */
+	public double getAveragePathLength() {
+		return augmentations > 0 ? (double) totalPathLength / augmentations : 0.0;
+	}
+
+	public int getMaxPathLength() {
+		return maxPathLength;
+	}
+
+	public long getRelaxations() {
+		return relaxations;
+	}
+
+	public long getPhases() {
+		return phases;
+	}
+
+	public long getRounds() {
+		return rounds;
+	}
+
+	public long getGraphBuilds() {
+		return graphBuilds;
+	}
+
+	public long getGraphBuildNanos() {
+		return graphBuildNanos;
+	}
+
+	public long getNegativeCycles() {
+		return negativeCycles;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	public long getTotalRequestNanos() {
+		return totalRequestNanos;
+	}
+
+	public long getMaxRequestNanos() {
+		return maxRequestNanos;
+	}
+}
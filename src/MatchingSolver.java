@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+
+/**
+ * A stateless solver for one of the algorithms of
+ * {@link BellmanFord#execute(int, String, ArrayList)}. The solver only holds
+ * its settings, which never change, and every call to
+ * {@link #solve(MatchingInstance, ArrayList)} works on its own state, so one
+ * solver can be used from many threads and many solves can share one
+ * {@link MatchingInstance}.
+ * <p>
+ *
+ * The settings are changed by copying: each with method returns a new solver
+ * and leaves the original as it was.
+ */
+public final class MatchingSolver {
+
+	private final String type;
+	private final double constant;
+	private final int sparseNeighbors;
+	private final int batchSize;
+	private final long batchMillis;
+	private final CoefficientStrategy coefficients;
+
+	/**
+	 * Creates a solver with a constant of 1.
+	 *
+	 * @param type
+	 *            The algorithm, one of the types of
+	 *            {@link BellmanFord#execute(int, String, ArrayList)}
+	 */
+	public MatchingSolver(String type) {
+		this(type, 1.0, 10, 10, 0, null);
+	}
+
+	private MatchingSolver(String type, double constant, int sparseNeighbors, int batchSize,
+			long batchMillis, CoefficientStrategy coefficients) {
+		this.type = type;
+		this.constant = constant;
+		this.sparseNeighbors = sparseNeighbors;
+		this.batchSize = batchSize;
+		this.batchMillis = batchMillis;
+		this.coefficients = coefficients;
+	}
+
+	/**
+	 * @param constant
+	 *            Constant multiplier of the online algorithms
+	 * @return A copy of this solver with another constant
+	 */
+	public MatchingSolver withConstant(double constant) {
+		return new MatchingSolver(type, constant, sparseNeighbors, batchSize, batchMillis,
+				coefficients);
+	}
+
+	/**
+	 * @param sparseNeighbors
+	 *            Neighbors kept per taxi and request by "offline-sparse"
+	 * @return A copy of this solver with another number of neighbors
+	 */
+	public MatchingSolver withSparseNeighbors(int sparseNeighbors) {
+		return new MatchingSolver(type, constant, sparseNeighbors, batchSize, batchMillis,
+				coefficients);
+	}
+
+	/**
+	 * @param batchSize
+	 *            Number of requests that closes a window of "batch"
+	 * @param batchMillis
+	 *            Milliseconds after which a window closes, 0 for no limit
+	 * @return A copy of this solver with another window
+	 */
+	public MatchingSolver withBatchWindow(int batchSize, long batchMillis) {
+		return new MatchingSolver(type, constant, sparseNeighbors, batchSize, batchMillis,
+				coefficients);
+	}
+
+	/**
+	 * @param coefficients
+	 *            Coefficient of each revealed edge of the online algorithms,
+	 *            or null for the default of
+	 *            {@link BellmanFord#setCoefficientStrategy(CoefficientStrategy)}
+	 * @return A copy of this solver with other coefficients
+	 */
+	public MatchingSolver withCoefficients(CoefficientStrategy coefficients) {
+		return new MatchingSolver(type, constant, sparseNeighbors, batchSize, batchMillis,
+				coefficients);
+	}
+
+	/**
+	 * Solves an instance.
+	 *
+	 * @param instance
+	 *            The data set to match
+	 * @param destinationIndices
+	 *            The arrival order of the requests for the online algorithms,
+	 *            same as the values of permuteDestinations (ignored by the
+	 *            offline ones)
+	 * @return The total net cost of the matching found
+	 * @throws IllegalArgumentException
+	 *             If the type of this solver does not accept an instance
+	 *             with a different number of taxis and requests
+	 */
+	public double solve(MatchingInstance instance, ArrayList<Integer> destinationIndices) {
+		// Everything that changes during the solve belongs to this call
+		BellmanFord bell = new BellmanFord(instance);
+		bell.setConstant(constant);
+		bell.setSparseNeighbors(sparseNeighbors);
+		bell.setBatchWindow(batchSize, batchMillis);
+		bell.setCoefficientStrategy(coefficients);
+
+		return bell.execute(instance.numTaxis(), type, destinationIndices);
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public String getType() {
+		return type;
+	}
+
+	public double getConstant() {
+		return constant;
+	}
+}
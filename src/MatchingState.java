@@ -0,0 +1,86 @@
+import java.util.Arrays;
+
+/**
+ * Tracks which vertices of the bipartite graph are matched and to whom. Every
+ * vertex (Set A and Set B, numbered the same way as the digraphs) has one slot
+ * holding its mate, so membership and mate lookups are constant time.
+ */
+public class MatchingState {
+
+	private final int[] mate;
+	private int size;
+
+	/**
+	 * Creates an empty matching
+	 * 
+	 * @param V
+	 *            The number of vertices in both sets
+	 */
+	public MatchingState(int V) {
+		mate = new int[V];
+		Arrays.fill(mate, -1);
+	}
+
+	/**
+	 * Matches v with w. Any previous mates of v and w become unmatched, so
+	 * applying this to every Set A to Set B edge of an augmenting path (in any
+	 * order) flips the matching along the path.
+	 * 
+	 * @param v
+	 *            First vertex
+	 * @param w
+	 *            Second vertex
+	 */
+	public void match(int v, int w) {
+		unmatch(v);
+		unmatch(w);
+		mate[v] = w;
+		mate[w] = v;
+		size++;
+	}
+
+	/**
+	 * Removes v and its mate from the matching, if v is matched.
+	 * 
+	 * @param v
+	 *            The vertex to unmatch
+	 */
+	public void unmatch(int v) {
+		if (mate[v] != -1) {
+			mate[mate[v]] = -1;
+			mate[v] = -1;
+			size--;
+		}
+	}
+
+	/**
+	 * Is v in the matching?
+	 * 
+	 * @param v
+	 *            The vertex
+	 * @return True if v is matched, false otherwise
+	 */
+	public boolean isMatched(int v) {
+		return mate[v] != -1;
+	}
+
+	/**
+	 * Returns the vertex matched to v.
+	 * 
+	 * @param v
+	 *            The vertex
+	 * @return The mate of v, or -1 if v is unmatched
+	 */
+	public int mate(int v) {
+		return mate[v];
+	}
+
+	/**
+	 * Returns the number of matched pairs.
+	 * 
+	 * @return The size of the matching
+	 */
+	public int size() {
+		return size;
+	}
+}
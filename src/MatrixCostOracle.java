@@ -0,0 +1,56 @@
+/**
+ * Cost oracle backed by a dense cost matrix.
+ */
+public class MatrixCostOracle implements CostOracle {
+
+	private final double[][] costMatrix;
+
+	/**
+	 * Wraps a cost matrix
+	 * 
+	 * @param costMatrix
+	 *            The cost matrix, where costMatrix[i][j] holds the cost between
+	 *            taxi i and request j
+	 */
+	public MatrixCostOracle(double[][] costMatrix) {
+		this.costMatrix = costMatrix;
+	}
+
+	public double cost(int taxi, int request) {
+		return costMatrix[taxi][request];
+	}
+
+	public int numTaxis() {
+		return costMatrix.length;
+	}
+
+	public int numRequests() {
+		return costMatrix[0].length;
+	}
+
+	public double[][] getMatrix() {
+		return costMatrix;
+	}
+
+	/**
+	 * Returns the dense matrix of an oracle, computing every entry unless the
+	 * oracle is already backed by one.
+	 * 
+	 * @param costs
+	 *            The cost oracle
+	 * @return The cost matrix
+	 */
+	public static double[][] toMatrix(CostOracle costs) {
+		if (costs instanceof MatrixCostOracle) {
+			return ((MatrixCostOracle) costs).getMatrix();
+		}
+
+		double[][] costMatrix = new double[costs.numTaxis()][costs.numRequests()];
+		for (int i = 0; i < costMatrix.length; i++) {
+			for (int j = 0; j < costMatrix[i].length; j++) {
+				costMatrix[i][j] = costs.cost(i, j);
+			}
+		}
+		return costMatrix;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Distance functions between two points of a {@link PointSet}. Besides the
+ * distance itself, every metric knows how to embed points into coordinates
+ * where a {@link KdTree} finds the same nearest neighbors.
+ */
+public enum Metric {
+
+	/**
+	 * Absolute difference of the x coordinates (points on a 1D line).
+	 */
+	LINE {
+		public double distance(double x1, double y1, double x2, double y2) {
+			return Math.abs(x1 - x2);
+		}
+
+		public double[][] embed(PointSet points) {
+			return new double[][] { points.getX() };
+		}
+	},
+
+	/**
+	 * Distance formula on (x, y).
+	 */
+	EUCLIDEAN {
+		public double distance(double x1, double y1, double x2, double y2) {
+			return Math.sqrt(Math.pow((x2 - x1), 2.0) + Math.pow((y2 - y1), 2.0));
+		}
+
+		public double[][] embed(PointSet points) {
+			return new double[][] { points.getX(), points.getY() };
+		}
+	},
+
+	/**
+	 * Manhattan distance on (x, y).
+	 */
+	MANHATTAN {
+		public double distance(double x1, double y1, double x2, double y2) {
+			return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+		}
+
+		public double[][] embed(PointSet points) {
+			return new double[][] { points.getX(), points.getY() };
+		}
+
+		public boolean isManhattan() {
+			return true;
+		}
+	},
+
+	/**
+	 * Haversine distance where x is the latitude and y the longitude. Points
+	 * are embedded on the unit sphere, where the straight line distance grows
+	 * with the great circle distance, so nearest neighbors are the same.
+	 */
+	HAVERSINE {
+		public double distance(double x1, double y1, double x2, double y2) {
+			return Distance.haversine(x1, y1, x2, y2);
+		}
+
+		public double[][] embed(PointSet points) {
+			double[][] coords = new double[3][points.size()];
+			for (int i = 0; i < points.size(); i++) {
+				double lat = Math.toRadians(points.getX(i));
+				double lon = Math.toRadians(points.getY(i));
+				coords[0][i] = Math.cos(lat) * Math.cos(lon);
+				coords[1][i] = Math.cos(lat) * Math.sin(lon);
+				coords[2][i] = Math.sin(lat);
+			}
+			return coords;
+		}
+	};
+
+	/**
+	 * Distance between (x1, y1) and (x2, y2).
+	 */
+	public abstract double distance(double x1, double y1, double x2, double y2);
+
+	/**
+	 * Coordinates of the points for a {@link KdTree}, one array per dimension.
+	 */
+	public abstract double[][] embed(PointSet points);
+
+	/**
+	 * Whether the embedded coordinates are compared with Manhattan instead of
+	 * straight line distance.
+	 */
+	public boolean isManhattan() {
+		return false;
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the shortest path to a target from the closest of several sources,
+ * running an independent {@link BellmanFordSP} from every source in parallel
+ * on the {@link SharedPool}. The digraph is only read, so every run shares it.
+ * <p>
+ *
+ * The sources are split in halves down to one per task, and each task keeps
+ * the shortest of its paths. When two halves are merged the lower half wins
+ * ties, so the path chosen is the one a sequential loop over the sources in
+ * the given order would keep with a strict less-than: the shortest, and the
+ * first in source order among equally short ones. The result does not depend
+ * on the number of threads.
+ */
+public class MultiSourceBellmanFord {
+
+	private final EdgeWeightedDigraph graph;
+	private final int target;
+
+	private Iterable<DirectedEdge> path;
+	private double distance = Double.MAX_VALUE;
+	private int source = -1;
+
+	/**
+	 * Computes the shortest path from any of the sources to the target.
+	 *
+	 * @param graph
+	 *            The digraph, not modified while the search runs
+	 * @param sources
+	 *            The source vertices, in the order that breaks ties
+	 * @param target
+	 *            The target vertex
+	 */
+	public MultiSourceBellmanFord(EdgeWeightedDigraph graph, int[] sources, int target) {
+		this.graph = graph;
+		this.target = target;
+
+		if (sources.length > 0) {
+			Search search = new Search(sources, 0, sources.length);
+			SharedPool.invoke(search);
+			path = search.path;
+			distance = search.distance;
+			source = search.source;
+		}
+	}
+
+	/**
+	 * Shortest path among the sources [lo, hi).
+	 */
+	private class Search extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] sources;
+		private final int lo, hi;
+
+		private Iterable<DirectedEdge> path;
+		private double distance = Double.MAX_VALUE;
+		private int source = -1;
+
+		private Search(int[] sources, int lo, int hi) {
+			this.sources = sources;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo == 1) {
+				BellmanFordSP sp = new BellmanFordSP(graph, sources[lo]);
+				if (sp.hasPathTo(target) && sp.distTo(target) < distance) {
+					distance = sp.distTo(target);
+					path = sp.pathTo(target);
+					source = sources[lo];
+				}
+				return;
+			}
+
+			int mid = (lo + hi) >>> 1;
+			Search lower = new Search(sources, lo, mid);
+			Search upper = new Search(sources, mid, hi);
+			invokeAll(lower, upper);
+
+			Search best = upper.distance < lower.distance ? upper : lower;
+			path = best.path;
+			distance = best.distance;
+			source = best.source;
+		}
+	}
+
+	/**
+	 * Getters
+	 */
+
+	/**
+	 * @return True if any source has a path to the target
+	 */
+	public boolean hasPath() {
+		return path != null;
+	}
+
+	/**
+	 * @return The shortest path, from its source to the target, or null if
+	 *         there is none
+	 */
+	public Iterable<DirectedEdge> getPath() {
+		return path;
+	}
+
+	/**
+	 * @return The length of the shortest path, Double.MAX_VALUE if there is
+	 *         none
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+	/**
+	 * @return The source the shortest path starts from, or -1 if there is none
+	 */
+	public int getSource() {
+		return source;
+	}
+}
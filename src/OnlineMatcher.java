@@ -0,0 +1,255 @@
+import java.util.Arrays;
+
+/**
+ * Incremental engine for the online matching. Keeps the residual graph (the
+ * current matching between taxis and revealed requests) and a potential for
+ * every vertex between requests, and answers each incoming request with a
+ * single shortest path search covering all free taxis at once.
+ * <p>
+ *
+ * The edge weights are the ones {@link BellmanFord#computeOnlineMatching} puts
+ * in its temporary matrix: an unmatched edge from a taxi to a revealed request
+ * costs its coefficient times the original cost, and a matched edge is
+ * reversed and costs the negated weight divided by the constant. Unrevealed
+ * requests never have outgoing edges, so no path can pass through them and
+ * they are left out of the graph entirely.
+ * <p>
+ *
+ * With a constant of at least 1 every augmentation along a shortest path keeps
+ * the reduced costs
+ *
+ * <pre>
+ * weight(u, v) + potential[u] - potential[v]
+ * </pre>
+ *
+ * non-negative, so each search is a Dijkstra. The search runs backwards from
+ * the new request and stops at the first free taxi it settles. Free taxis all
+ * share the same potential (they never change while free), so the closest one
+ * in reduced cost is also the one with the cheapest path. A matched request
+ * has a single outgoing edge to its taxi, so the search only has to keep
+ * distances for the taxis.
+ */
+public class OnlineMatcher {
+
+	private final CostOracle costs;
+	private final double constant;
+	private final CoefficientStrategy coefficients;
+
+	private final int numTaxis;
+
+	private final double[] taxiPotential, requestPotential;
+	private final int[] requestByTaxi, taxiByRequest;
+	private int numMatched;
+
+	// Search state: distance from each taxi to the new request, the next
+	// request on that path and the taxis settled so far
+	private final double[] distToTaxi;
+	private final int[] nextRequest;
+	private final boolean[] settled;
+	private final int[] settledTaxis;
+	private final double[] distToRequest;
+
+	// Vertices of the last augmenting path, from the free taxi to the request
+	private int[] lastPath = new int[0];
+
+	private double totalCost;
+
+	// Told about every augmentation, or null
+	private MatchingListener listener;
+
+	/**
+	 * Creates the engine with every taxi free and no request revealed.
+	 *
+	 * @param costs
+	 *            The costs between taxis and requests
+	 * @param constant
+	 *            Constant multiplier applied to revealed costs, at least 1
+	 * @param coefficients
+	 *            Multiplier of each revealed edge
+	 * @throws IllegalArgumentException
+	 *             If the constant is below 1, which could leave negative
+	 *             reduced costs for the searches
+	 */
+	public OnlineMatcher(CostOracle costs, double constant, CoefficientStrategy coefficients) {
+		if (!(constant >= 1)) {
+			throw new IllegalArgumentException("Constant must be at least 1: " + constant);
+		}
+		this.costs = costs;
+		this.constant = constant;
+		this.coefficients = coefficients;
+
+		numTaxis = costs.numTaxis();
+		int numRequests = costs.numRequests();
+
+		taxiPotential = new double[numTaxis];
+		requestPotential = new double[numRequests];
+		requestByTaxi = new int[numTaxis];
+		taxiByRequest = new int[numRequests];
+		Arrays.fill(requestByTaxi, -1);
+		Arrays.fill(taxiByRequest, -1);
+
+		distToTaxi = new double[numTaxis];
+		nextRequest = new int[numTaxis];
+		settled = new boolean[numTaxis];
+		settledTaxis = new int[numTaxis];
+		distToRequest = new double[numRequests];
+	}
+
+	/**
+	 * Reveals a request and matches it through the shortest path from any free
+	 * taxi. Previously matched requests on the path are re-matched along it.
+	 *
+	 * @param request
+	 *            Index of the incoming request, 0 <= request < number of
+	 *            requests
+	 * @return The free taxi at the start of the path, or -1 if no taxi is free
+	 *         or the request was already matched
+	 */
+	public int match(int request) {
+		if (taxiByRequest[request] != -1 || numMatched == numTaxis) {
+			return -1;
+		}
+
+		// Any potential no larger than every incoming reduced edge keeps the
+		// new edges non-negative
+		double potential = Double.POSITIVE_INFINITY;
+		for (int t = 0; t < numTaxis; t++) {
+			potential = Math.min(potential, weight(t, request) + taxiPotential[t]);
+		}
+		requestPotential[request] = potential;
+
+		for (int t = 0; t < numTaxis; t++) {
+			distToTaxi[t] = weight(t, request) + taxiPotential[t] - potential;
+			nextRequest[t] = request;
+			settled[t] = false;
+		}
+
+		// Dijkstra towards the new request until a free taxi is settled
+		int numSettled = 0;
+		int source;
+		while (true) {
+			int closest = -1;
+			for (int t = 0; t < numTaxis; t++) {
+				if (!settled[t] && (closest == -1 || distToTaxi[t] < distToTaxi[closest])) {
+					closest = t;
+				}
+			}
+
+			settled[closest] = true;
+			settledTaxis[numSettled++] = closest;
+
+			int r = requestByTaxi[closest];
+			if (r == -1) {
+				source = closest;
+				break;
+			}
+
+			// The only edge out of a matched request goes to its taxi
+			distToRequest[r] = distToTaxi[closest] - weight(closest, r) / constant
+					+ requestPotential[r] - taxiPotential[closest];
+			relax(r);
+		}
+
+		// Shift the potentials of everything closer than the free taxi so the
+		// path becomes tight. Free taxis are never closer, so they keep sharing
+		// one potential.
+		double target = distToTaxi[source];
+		for (int k = 0; k < numSettled; k++) {
+			int t = settledTaxis[k];
+			taxiPotential[t] += target - distToTaxi[t];
+
+			int r = requestByTaxi[t];
+			if (r != -1 && distToRequest[r] < target) {
+				requestPotential[r] += target - distToRequest[r];
+			}
+		}
+		requestPotential[request] += target;
+
+		// Flip the matching along the path from the free taxi, recording the
+		// path vertices (taxis first, requests after them)
+		int[] path = new int[2 * numSettled];
+		int length = 0;
+		int t = source;
+		while (true) {
+			int r = nextRequest[t];
+			int previous = taxiByRequest[r];
+			requestByTaxi[t] = r;
+			taxiByRequest[r] = t;
+			path[length++] = t;
+			path[length++] = numTaxis + r;
+			if (r == request) {
+				break;
+			}
+			t = previous;
+		}
+		lastPath = Arrays.copyOf(path, length);
+		numMatched++;
+
+		// The new request and every settled matched request relaxed an edge
+		// from each taxi
+		if (listener != null) {
+			listener.onRelaxations((long) numSettled * numTaxis);
+			listener.onAugmentation(length - 1);
+		}
+
+		totalCost += costs.cost(source, request);
+		return source;
+	}
+
+	/**
+	 * Relaxes the edges from every unsettled taxi into a matched request.
+	 */
+	private void relax(int r) {
+		for (int t = 0; t < numTaxis; t++) {
+			if (settled[t]) {
+				continue;
+			}
+
+			double distance = distToRequest[r] + weight(t, r) + taxiPotential[t] - requestPotential[r];
+			if (distance < distToTaxi[t]) {
+				distToTaxi[t] = distance;
+				nextRequest[t] = r;
+			}
+		}
+	}
+
+	/**
+	 * Weight of the unmatched edge from taxi t to request r.
+	 */
+	private double weight(int t, int r) {
+		return coefficients.coefficient(t, r) * costs.cost(t, r);
+	}
+
+	/**
+	 * Sets the listener told about every augmentation and the relaxations of
+	 * its search.
+	 *
+	 * @param listener
+	 *            The listener, or null for none
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the augmenting path taken by the last successful call to
+	 * {@link #match(int)}. Taxis are numbered 0 <= t < number of taxis and
+	 * request r is numbered (number of taxis + r), the same vertex numbering as
+	 * the digraphs built by {@link BellmanFord}.
+	 *
+	 * @return The path vertices from the dispatched taxi to the new request
+	 */
+	public int[] getLastPath() {
+		return lastPath;
+	}
+
+	/**
+	 * Returns the sum of the original costs between each request and the free
+	 * taxi that was dispatched for it.
+	 *
+	 * @return Total net cost of the online matching so far
+	 */
+	public double getTotalCost() {
+		return totalCost;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * A stateful online matching session that takes requests one at a time as
+ * they arrive instead of replaying a pre-permuted list of every request. The
+ * residual graph and potentials of the underlying {@link OnlineMatcher} stay
+ * in memory between calls, so each call only pays for its own search.
+ */
+public class OnlineSession {
+
+	private final OnlineMatcher matcher;
+	private final CostOracle costs;
+	private final int numSetA;
+
+	// Told about every request, or null
+	private MatchingListener listener;
+
+	/**
+	 * Opens a session with every taxi free.
+	 * 
+	 * @param costs
+	 *            The costs between taxis and requests
+	 * @param constant
+	 *            Constant multiplier applied to revealed costs
+	 * @param coefficients
+	 *            Multiplier of each revealed edge
+	 */
+	public OnlineSession(CostOracle costs, double constant, CoefficientStrategy coefficients) {
+		this.matcher = new OnlineMatcher(costs, constant, coefficients);
+		this.costs = costs;
+		this.numSetA = costs.numTaxis();
+	}
+
+	/**
+	 * Handles an incoming request.
+	 * 
+	 * @param location
+	 *            The destination index of the request: numSetA <= location <
+	 *            numSetA*2, same as the values of permuteDestinations
+	 * @return The dispatch decision for the request, or null if no taxi is
+	 *         free or the request was already served
+	 */
+	public Dispatch onRequest(int location) {
+		long start = System.nanoTime();
+		int taxi = matcher.match(location - numSetA);
+		long latency = System.nanoTime() - start;
+
+		if (taxi == -1) {
+			return null;
+		}
+		if (listener != null) {
+			listener.onRequest(latency);
+		}
+
+		return new Dispatch(taxi, location, costs.cost(taxi, location - numSetA),
+				matcher.getLastPath(), latency);
+	}
+
+	/**
+	 * Sets the listener told about the latency of every served request and
+	 * about the augmentations behind it.
+	 * 
+	 * @param listener
+	 *            The listener, or null for none
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+		matcher.setListener(listener);
+	}
+
+	/**
+	 * Returns the total net cost of every request served so far.
+	 * 
+	 * @return The total net cost of the online matching
+	 */
+	public double getTotalCost() {
+		return matcher.getTotalCost();
+	}
+}
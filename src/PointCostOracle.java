@@ -0,0 +1,86 @@
+/**
+ * Cost oracle that computes each cost on demand from the taxi and request
+ * locations, so memory grows with the number of points instead of the number
+ * of edges. Computed costs can optionally be kept in a bounded direct mapped
+ * cache, where each edge has exactly one slot and a newer edge simply replaces
+ * the older one.
+ * <p>
+ *
+ * A slot holds one immutable entry with both the edge and its cost, replaced
+ * in a single write, so the oracle can be read from several threads at once:
+ * a thread sees either a whole entry or none, and a race only loses a cached
+ * cost.
+ */
+public class PointCostOracle implements CostOracle {
+
+	private final PointSet taxis;
+	private final PointSet requests;
+
+	// Entry of each cache slot, null if empty
+	private final Entry[] cache;
+	private final int mask;
+
+	/**
+	 * Creates the oracle
+	 * 
+	 * @param taxis
+	 *            Set A locations
+	 * @param requests
+	 *            Set B locations
+	 * @param cacheSize
+	 *            Maximum number of cached costs, 0 for no cache (rounded up to
+	 *            a power of two)
+	 */
+	public PointCostOracle(PointSet taxis, PointSet requests, int cacheSize) {
+		this.taxis = taxis;
+		this.requests = requests;
+
+		if (cacheSize > 0) {
+			int capacity = Integer.highestOneBit(Math.max(cacheSize - 1, 1)) << 1;
+			cache = new Entry[capacity];
+			mask = capacity - 1;
+		} else {
+			cache = null;
+			mask = 0;
+		}
+	}
+
+	public double cost(int taxi, int request) {
+		if (cache == null) {
+			return taxis.distance(taxi, requests, request);
+		}
+
+		long edge = (long) taxi * requests.size() + request;
+		int slot = (int) (edge ^ (edge >>> 32)) * 0x9E3779B9 & mask;
+		Entry entry = cache[slot];
+		if (entry != null && entry.edge == edge) {
+			return entry.cost;
+		}
+
+		double cost = taxis.distance(taxi, requests, request);
+		cache[slot] = new Entry(edge, cost);
+		return cost;
+	}
+
+	public int numTaxis() {
+		return taxis.size();
+	}
+
+	public int numRequests() {
+		return requests.size();
+	}
+
+	/**
+	 * A cached edge and its cost. The fields are final, so a thread that
+	 * reads the entry from its slot also sees both of them.
+	 */
+	private static final class Entry {
+		private final long edge;
+		private final double cost;
+
+		private Entry(long edge, double cost) {
+			this.edge = edge;
+			this.cost = cost;
+		}
+	}
+}
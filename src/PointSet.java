@@ -0,0 +1,84 @@
+/**
+ * Locations of a set of taxis or requests stored as one array per coordinate.
+ * For the Uber data x is the latitude and y the longitude, for the synthetic
+ * data they are the plain coordinates (y is 0 on a 1D line).
+ */
+public class PointSet {
+
+	private final double[] x;
+	private final double[] y;
+	private final Metric metric;
+
+	/**
+	 * Creates a point set
+	 * 
+	 * @param x
+	 *            First coordinate of every point
+	 * @param y
+	 *            Second coordinate of every point
+	 * @param metric
+	 *            Distance function between points
+	 */
+	public PointSet(double[] x, double[] y, Metric metric) {
+		this.x = x;
+		this.y = y;
+		this.metric = metric;
+	}
+
+	/**
+	 * Distance between point i of this set and point j of another set.
+	 * 
+	 * @param i
+	 *            Index of the point in this set
+	 * @param other
+	 *            The other point set
+	 * @param j
+	 *            Index of the point in the other set
+	 * @return The distance according to this set's metric
+	 */
+	public double distance(int i, PointSet other, int j) {
+		return metric.distance(x[i], y[i], other.x[j], other.y[j]);
+	}
+
+	/**
+	 * Builds the dense cost matrix between two point sets. The rows are
+	 * filled in parallel by {@link CostMatrixBuilder}.
+	 * 
+	 * @param taxis
+	 *            Set A points (rows)
+	 * @param requests
+	 *            Set B points (columns)
+	 * @return Cost matrix of the distances
+	 */
+	public static double[][] costMatrix(PointSet taxis, PointSet requests) {
+		return CostMatrixBuilder.build(taxis, requests);
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public int size() {
+		return x.length;
+	}
+
+	public double getX(int i) {
+		return x[i];
+	}
+
+	public double getY(int i) {
+		return y[i];
+	}
+
+	public double[] getX() {
+		return x;
+	}
+
+	public double[] getY() {
+		return y;
+	}
+
+	public Metric getMetric() {
+		return metric;
+	}
+}
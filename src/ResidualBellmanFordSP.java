@@ -0,0 +1,209 @@
+import java.util.Arrays;
+
+/**
+ * Queue-based Bellman Ford shortest paths over a {@link ResidualGraph}. Follows
+ * the same algorithm as the algs4 BellmanFordSP (including the periodic
+ * negative cycle check on the shortest paths tree) but works on edge indices
+ * and primitive arrays so no edge objects are created.
+ */
+public class ResidualBellmanFordSP {
+
+	private final ResidualGraph G;
+
+	private final double[] distTo;
+	private final int[] edgeTo;
+	private final boolean[] onQueue;
+
+	// Circular queue of vertices, each vertex is on it at most once
+	private final int[] queue;
+	private int head;
+	private int size;
+
+	// Number of relaxations, used to check for negative cycles every V calls
+	private int cost;
+	private int[] cycle;
+
+	/**
+	 * Computes a shortest paths tree from s to every other vertex in the
+	 * residual graph.
+	 *
+	 * @param G
+	 *            The residual graph
+	 * @param s
+	 *            The source vertex
+	 */
+	public ResidualBellmanFordSP(ResidualGraph G, int s) {
+		this.G = G;
+		distTo = new double[G.V()];
+		edgeTo = new int[G.V()];
+		onQueue = new boolean[G.V()];
+		queue = new int[G.V()];
+
+		Arrays.fill(distTo, Double.POSITIVE_INFINITY);
+		Arrays.fill(edgeTo, -1);
+		distTo[s] = 0.0;
+
+		enqueue(s);
+		while (size > 0 && !hasNegativeCycle()) {
+			int v = dequeue();
+			relax(v);
+		}
+	}
+
+	/**
+	 * Relaxes every outgoing edge of v and puts the changed heads on the queue.
+	 */
+	private void relax(int v) {
+		for (int k = 0; k < G.outdegree(v); k++) {
+			int e = G.adj(v, k);
+			int w = G.to(e);
+			if (distTo[w] > distTo[v] + G.weight(e)) {
+				distTo[w] = distTo[v] + G.weight(e);
+				edgeTo[w] = e;
+				if (!onQueue[w]) {
+					enqueue(w);
+				}
+			}
+			if (cost++ % G.V() == 0) {
+				findNegativeCycle();
+			}
+		}
+	}
+
+	private void enqueue(int v) {
+		queue[(head + size) % queue.length] = v;
+		size++;
+		onQueue[v] = true;
+	}
+
+	private int dequeue() {
+		int v = queue[head];
+		head = (head + 1) % queue.length;
+		size--;
+		onQueue[v] = false;
+		return v;
+	}
+
+	/**
+	 * Looks for a cycle in the shortest paths tree. Every vertex has at most
+	 * one tree edge, so following the edgeTo links from each vertex either ends
+	 * at the source or runs into a cycle.
+	 */
+	private void findNegativeCycle() {
+		int V = edgeTo.length;
+
+		// 0 = unvisited, 1 = on the current walk, 2 = done
+		byte[] state = new byte[V];
+
+		for (int s = 0; s < V; s++) {
+			int v = s;
+			while (v != -1 && state[v] == 0) {
+				state[v] = 1;
+				v = edgeTo[v] == -1 ? -1 : G.from(edgeTo[v]);
+			}
+
+			if (v != -1 && state[v] == 1) {
+				// Walked back into the current walk, v lies on a cycle
+				int length = 0;
+				int u = v;
+				do {
+					length++;
+					u = G.from(edgeTo[u]);
+				} while (u != v);
+
+				cycle = new int[length];
+				u = v;
+				for (int k = length - 1; k >= 0; k--) {
+					cycle[k] = edgeTo[u];
+					u = G.from(edgeTo[u]);
+				}
+				return;
+			}
+
+			for (v = s; v != -1 && state[v] == 1; v = edgeTo[v] == -1 ? -1 : G.from(edgeTo[v])) {
+				state[v] = 2;
+			}
+		}
+	}
+
+	/**
+	 * Is there a negative cycle reachable from the source vertex?
+	 *
+	 * @return True if there is a negative cycle, false otherwise
+	 */
+	public boolean hasNegativeCycle() {
+		return cycle != null;
+	}
+
+	/**
+	 * Returns a negative cycle reachable from the source vertex.
+	 *
+	 * @return The edge indices of the cycle in order, or null if there is no
+	 *         such cycle
+	 */
+	public int[] negativeCycle() {
+		return cycle;
+	}
+
+	/**
+	 * Returns how many edges the search relaxed.
+	 *
+	 * @return The number of relaxations
+	 */
+	public int getNumRelaxations() {
+		return cost;
+	}
+
+	/**
+	 * Returns the length of a shortest path from the source vertex to v.
+	 *
+	 * @param v
+	 *            The destination vertex
+	 * @return The length of the path, Double.POSITIVE_INFINITY if no such path
+	 */
+	public double distTo(int v) {
+		if (hasNegativeCycle()) {
+			throw new UnsupportedOperationException("Negative cost cycle exists");
+		}
+		return distTo[v];
+	}
+
+	/**
+	 * Is there a path from the source vertex to v?
+	 *
+	 * @param v
+	 *            The destination vertex
+	 * @return True if there is a path, false otherwise
+	 */
+	public boolean hasPathTo(int v) {
+		return distTo[v] < Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns a shortest path from the source vertex to v.
+	 *
+	 * @param v
+	 *            The destination vertex
+	 * @return The edge indices of the path in order from the source, or null if
+	 *         no such path
+	 */
+	public int[] pathTo(int v) {
+		if (hasNegativeCycle()) {
+			throw new UnsupportedOperationException("Negative cost cycle exists");
+		}
+		if (!hasPathTo(v)) {
+			return null;
+		}
+
+		int length = 0;
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[G.from(e)]) {
+			length++;
+		}
+
+		int[] path = new int[length];
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[G.from(e)]) {
+			path[--length] = e;
+		}
+		return path;
+	}
+}
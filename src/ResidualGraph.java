@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * A mutable residual graph of a bipartite matching problem backed by primitive
+ * arrays. Every edge is stored once with its tail, head and weight, and every
+ * vertex keeps the indices of its outgoing edges. Reversing an edge (when it
+ * enters or leaves the matching) moves it from the adjacency list of its old
+ * tail to the one of its new tail in constant time, so augmenting along a path
+ * only touches the edges on that path instead of rebuilding the whole graph.
+ */
+public class ResidualGraph {
+
+	private final int V;
+	private int E;
+
+	private int[] from;
+	private int[] to;
+	private double[] weight;
+
+	// Position of each edge inside the adjacency list of its tail
+	private int[] position;
+
+	private final int[][] adj;
+	private final int[] outdegree;
+
+	/**
+	 * Creates an empty residual graph.
+	 *
+	 * @param V
+	 *            The number of vertices
+	 * @param capacity
+	 *            The expected number of edges (the graph grows if exceeded)
+	 */
+	public ResidualGraph(int V, int capacity) {
+		this.V = V;
+		this.E = 0;
+
+		capacity = Math.max(capacity, 1);
+		from = new int[capacity];
+		to = new int[capacity];
+		weight = new double[capacity];
+		position = new int[capacity];
+
+		adj = new int[V][];
+		outdegree = new int[V];
+	}
+
+	/**
+	 * Builds the residual graph of an empty matching from a cost oracle. Set A
+	 * vertices are 0 <= i < numTaxis and every one of them has an edge to each
+	 * set B vertex numTaxis <= j < V.
+	 *
+	 * @param costs
+	 *            The costs between taxis and requests
+	 * @return The residual graph with all edges directed from set A to set B
+	 */
+	public static ResidualGraph fromCosts(CostOracle costs) {
+		int rows = costs.numTaxis();
+		int cols = costs.numRequests();
+
+		ResidualGraph graph = new ResidualGraph(rows + cols, rows * cols);
+		for (int i = 0; i < rows; i++) {
+			graph.adj[i] = new int[cols];
+			for (int j = 0; j < cols; j++) {
+				graph.addEdge(i, j + rows, costs.cost(i, j));
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Adds a directed edge to the graph.
+	 *
+	 * @param v
+	 *            Tail of the edge
+	 * @param w
+	 *            Head of the edge
+	 * @param edgeWeight
+	 *            Weight of the edge
+	 * @return The index of the new edge
+	 */
+	public int addEdge(int v, int w, double edgeWeight) {
+		if (E == from.length) {
+			int capacity = 2 * from.length;
+			from = Arrays.copyOf(from, capacity);
+			to = Arrays.copyOf(to, capacity);
+			weight = Arrays.copyOf(weight, capacity);
+			position = Arrays.copyOf(position, capacity);
+		}
+
+		int e = E++;
+		from[e] = v;
+		to[e] = w;
+		weight[e] = edgeWeight;
+		attach(e);
+		return e;
+	}
+
+	/**
+	 * Reverses an edge in place and negates its weight.
+	 *
+	 * @param e
+	 *            Index of the edge to reverse
+	 */
+	public void reverse(int e) {
+		reverse(e, -1.0 * weight[e]);
+	}
+
+	/**
+	 * Reverses an edge in place and gives it a new weight.
+	 *
+	 * @param e
+	 *            Index of the edge to reverse
+	 * @param edgeWeight
+	 *            Weight of the reversed edge
+	 */
+	public void reverse(int e, double edgeWeight) {
+		detach(e);
+
+		int tail = from[e];
+		from[e] = to[e];
+		to[e] = tail;
+		weight[e] = edgeWeight;
+
+		attach(e);
+	}
+
+	/**
+	 * Appends edge e to the adjacency list of its tail.
+	 */
+	private void attach(int e) {
+		int v = from[e];
+		int[] list = adj[v];
+		if (list == null) {
+			list = new int[4];
+			adj[v] = list;
+		} else if (outdegree[v] == list.length) {
+			list = Arrays.copyOf(list, 2 * list.length);
+			adj[v] = list;
+		}
+		position[e] = outdegree[v];
+		list[outdegree[v]++] = e;
+	}
+
+	/**
+	 * Removes edge e from the adjacency list of its tail by moving the last
+	 * edge of that list into its slot.
+	 */
+	private void detach(int e) {
+		int v = from[e];
+		int[] list = adj[v];
+		int last = list[--outdegree[v]];
+		list[position[e]] = last;
+		position[last] = position[e];
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public int V() {
+		return V;
+	}
+
+	public int E() {
+		return E;
+	}
+
+	public int from(int e) {
+		return from[e];
+	}
+
+	public int to(int e) {
+		return to[e];
+	}
+
+	public double weight(int e) {
+		return weight[e];
+	}
+
+	public int outdegree(int v) {
+		return outdegree[v];
+	}
+
+	/**
+	 * Returns the k-th outgoing edge of vertex v, 0 <= k < outdegree(v).
+	 */
+	public int adj(int v, int k) {
+		return adj[v][k];
+	}
+}
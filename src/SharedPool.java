@@ -0,0 +1,42 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The one fork/join pool behind every parallel part of the project (cost
+ * matrices, trip parsing, synthetic points, auction bids, online searches and
+ * competitive ratio sweeps), sized to the number of cores.
+ * <p>
+ *
+ * A task started from inside a pool task, e.g. the online searches of a sweep
+ * cell, runs in that pool as a subtask instead of blocking its worker on a
+ * second pool, so the number of threads stays at one per core.
+ */
+public final class SharedPool {
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	private SharedPool() {
+	}
+
+	/**
+	 * Runs a task to completion, on the pool or as a subtask of the pool task
+	 * calling it.
+	 * 
+	 * @param task
+	 *            The task to run
+	 * @return The result of the task
+	 */
+	public static <T> T invoke(ForkJoinTask<T> task) {
+		if (ForkJoinTask.inForkJoinPool()) {
+			return task.invoke();
+		}
+		return POOL.invoke(task);
+	}
+
+	/**
+	 * @return The number of worker threads of the pool
+	 */
+	public static int getParallelism() {
+		return POOL.getParallelism();
+	}
+}
@@ -0,0 +1,349 @@
+import java.util.Arrays;
+
+/**
+ * Computes the smallest cost matching of a bipartite graph by successive
+ * shortest augmenting paths. Every taxi (Set A) keeps a potential and every
+ * request (Set B) keeps a potential such that the reduced cost
+ *
+ * <pre>
+ * cost[i][j] - taxiPotential[i] - requestPotential[j]
+ * </pre>
+ *
+ * of every edge is non-negative and zero on matched edges. The reduced costs
+ * let each augmenting path be found with a dense O(n^2) Dijkstra instead of a
+ * Bellman Ford run, and the potentials are carried over from one augmentation
+ * to the next so they never have to be recomputed.
+ * <p>
+ *
+ * The costs are treated as if they were padded with zero cost requests or
+ * taxis to a square, the same way {@link HungarianAlgorithm} does, and every
+ * padded vertex is matched too. This keeps the potentials of a solved
+ * instance valid for all of its vertices, so they can warm start the next
+ * instance (see {@link #warmStart(int[], double[], double[], int[], int[])}).
+ */
+public class ShortestAugmentingPath {
+
+	// Largest relative slack of an edge kept by a warm start
+	private static final double TOLERANCE = 1e-9;
+
+	private final CostOracle costs;
+	private final int rows, cols, dim;
+
+	private final double[] taxiPotential, requestPotential;
+	private final int[] requestByTaxi, taxiByRequest;
+
+	// Dijkstra state, reused by every augmentation
+	private final double[] minReducedCost;
+	private final int[] previousRequest;
+	private final boolean[] visited;
+
+	private int numAugmentations;
+
+	// Told about every augmentation, or null
+	private MatchingListener listener;
+
+	/**
+	 * Creates the matcher.
+	 *
+	 * @param costs
+	 *            The costs of matching each taxi to each request
+	 */
+	public ShortestAugmentingPath(CostOracle costs) {
+		this.costs = costs;
+		this.rows = costs.numTaxis();
+		this.cols = costs.numRequests();
+		this.dim = Math.max(rows, cols);
+
+		taxiPotential = new double[dim];
+		requestPotential = new double[dim];
+		requestByTaxi = new int[dim];
+		taxiByRequest = new int[dim];
+		Arrays.fill(requestByTaxi, -1);
+		Arrays.fill(taxiByRequest, -1);
+
+		minReducedCost = new double[dim];
+		previousRequest = new int[dim];
+		visited = new boolean[dim];
+	}
+
+	/**
+	 * Matches every taxi.
+	 *
+	 * @return The request matched to each taxi. A value of -1 means the taxi
+	 *         is unmatched (only when there are more taxis than requests).
+	 */
+	public int[] execute() {
+		numAugmentations = 0;
+		for (int i = 0; i < dim; i++) {
+			if (requestByTaxi[i] == -1) {
+				augment(i);
+				numAugmentations++;
+			}
+		}
+
+		int[] result = Arrays.copyOf(requestByTaxi, rows);
+		for (int i = 0; i < rows; i++) {
+			if (result[i] >= cols) {
+				result[i] = -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Starts from the solution of a previous instance that shares most of its
+	 * taxis and requests with this one, so that {@link #execute()} only needs
+	 * an augmentation for each taxi that lost its request. Must be called
+	 * before {@link #execute()}.
+	 * <p>
+	 *
+	 * Every pair of the previous matching whose taxi and request are both
+	 * still there is kept, and so is every unmatched taxi or request (they
+	 * were matched to padding, and take over a padded vertex of this
+	 * instance if there is one left). The request potentials of the previous
+	 * instance are kept, every taxi potential is set to the smallest reduced
+	 * cost of its row over the kept requests, and every added request gets
+	 * the smallest reduced cost of its column. This keeps every reduced cost
+	 * non-negative, and a kept pair stays matched if its edge is still tight
+	 * (always, unless the costs changed). Each taxi left free is then one
+	 * augmentation of {@link #execute()}.
+	 * <p>
+	 *
+	 * Fitting the potentials reads every cost once, the same as a single
+	 * augmentation, so repairing the matching costs O(n^2) times one plus the
+	 * number of changes instead of O(n^3).
+	 *
+	 * @param previousMatching
+	 *            The request matched to each taxi of the previous instance, as
+	 *            returned by its {@link #execute()}
+	 * @param previousTaxiPotentials
+	 *            The taxi potentials of the previous instance
+	 * @param previousRequestPotentials
+	 *            The request potentials of the previous instance
+	 * @param taxiOrigin
+	 *            The index in the previous instance of each taxi, or -1 for an
+	 *            added taxi. Previous taxis that do not appear are removed.
+	 * @param requestOrigin
+	 *            The index in the previous instance of each request, or -1 for
+	 *            an added request. Previous requests that do not appear are
+	 *            removed.
+	 */
+	public void warmStart(int[] previousMatching, double[] previousTaxiPotentials,
+			double[] previousRequestPotentials, int[] taxiOrigin, int[] requestOrigin) {
+		if (taxiOrigin.length != rows || requestOrigin.length != cols) {
+			throw new IllegalArgumentException("Expected " + rows + " taxi and " + cols
+					+ " request origins");
+		}
+		Arrays.fill(requestByTaxi, -1);
+		Arrays.fill(taxiByRequest, -1);
+
+		// Requests whose potential is carried over, and the request each
+		// taxi would keep
+		boolean[] kept = new boolean[dim];
+		int[] keptRequest = new int[dim];
+		Arrays.fill(keptRequest, -1);
+
+		int[] requestByOrigin = new int[previousRequestPotentials.length];
+		Arrays.fill(requestByOrigin, -1);
+		boolean[] previouslyMatched = new boolean[previousRequestPotentials.length];
+		for (int r : previousMatching) {
+			if (r != -1) {
+				previouslyMatched[r] = true;
+			}
+		}
+		for (int j = 0; j < cols; j++) {
+			if (requestOrigin[j] != -1) {
+				requestByOrigin[requestOrigin[j]] = j;
+				requestPotential[j] = previousRequestPotentials[requestOrigin[j]];
+				kept[j] = true;
+			}
+		}
+
+		// Kept taxis that were matched to padding take a padded request,
+		// whose potential makes that zero cost edge tight
+		int paddedRequest = cols;
+		for (int i = 0; i < rows; i++) {
+			int origin = taxiOrigin[i];
+			if (origin == -1) {
+				continue;
+			}
+			int previous = previousMatching[origin];
+			if (previous != -1) {
+				keptRequest[i] = requestByOrigin[previous];
+			} else if (paddedRequest < dim) {
+				keptRequest[i] = paddedRequest;
+				requestPotential[paddedRequest] = -previousTaxiPotentials[origin];
+				kept[paddedRequest++] = true;
+			}
+		}
+
+		// Kept requests that were matched to padding take a padded taxi
+		int paddedTaxi = rows;
+		for (int j = 0; j < cols && paddedTaxi < dim; j++) {
+			if (kept[j] && !previouslyMatched[requestOrigin[j]]) {
+				keptRequest[paddedTaxi++] = j;
+			}
+		}
+
+		boolean anyKept = false;
+		for (int j = 0; j < dim; j++) {
+			anyKept |= kept[j];
+		}
+
+		for (int i = 0; i < dim; i++) {
+			double min = anyKept ? Double.POSITIVE_INFINITY : 0.0;
+			for (int j = 0; j < dim; j++) {
+				if (kept[j]) {
+					min = Math.min(min, cost(i, j) - requestPotential[j]);
+				}
+			}
+			taxiPotential[i] = min;
+
+			// The potentials carry the rounding of every earlier
+			// augmentation, so a tight edge may be a few ulps above the
+			// minimum
+			int j = keptRequest[i];
+			if (j != -1) {
+				double slack = cost(i, j) - requestPotential[j];
+				if (slack - min <= TOLERANCE * Math.max(Math.abs(slack), 1.0)) {
+					taxiPotential[i] = slack;
+					requestByTaxi[i] = j;
+					taxiByRequest[j] = i;
+				}
+			}
+		}
+
+		for (int j = 0; j < dim; j++) {
+			if (!kept[j]) {
+				double min = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < dim; i++) {
+					min = Math.min(min, cost(i, j) - taxiPotential[i]);
+				}
+				requestPotential[j] = min;
+			}
+		}
+	}
+
+	/**
+	 * Finds the shortest augmenting path from a free taxi to any free request
+	 * and flips the matching along it.
+	 *
+	 * The search only needs the reduced cost of each unvisited request from
+	 * the last reached taxi, so every step is a linear scan over the requests.
+	 * Once the closest request is settled the potentials of the visited
+	 * vertices are shifted by its distance, which keeps all reduced costs
+	 * non-negative and makes the edges of the final path tight.
+	 *
+	 * @param taxi
+	 *            The free taxi to augment from
+	 */
+	public void augment(int taxi) {
+		Arrays.fill(minReducedCost, Double.POSITIVE_INFINITY);
+		Arrays.fill(previousRequest, -1);
+		Arrays.fill(visited, false);
+
+		int currentTaxi = taxi;
+		int currentRequest = -1;
+		int freeRequest = -1;
+		int steps = 0;
+
+		while (freeRequest == -1) {
+			steps++;
+			double delta = Double.POSITIVE_INFINITY;
+			int nextRequest = -1;
+
+			for (int j = 0; j < dim; j++) {
+				if (visited[j]) {
+					continue;
+				}
+
+				double reduced = cost(currentTaxi, j) - taxiPotential[currentTaxi]
+						- requestPotential[j];
+				if (reduced < minReducedCost[j]) {
+					minReducedCost[j] = reduced;
+					previousRequest[j] = currentRequest;
+				}
+				if (minReducedCost[j] < delta) {
+					delta = minReducedCost[j];
+					nextRequest = j;
+				}
+			}
+
+			// Shift the potentials of the search tree by the distance of the
+			// closest request
+			taxiPotential[taxi] += delta;
+			for (int j = 0; j < dim; j++) {
+				if (visited[j]) {
+					taxiPotential[taxiByRequest[j]] += delta;
+					requestPotential[j] -= delta;
+				} else {
+					minReducedCost[j] -= delta;
+				}
+			}
+
+			visited[nextRequest] = true;
+			if (taxiByRequest[nextRequest] == -1) {
+				freeRequest = nextRequest;
+			} else {
+				currentTaxi = taxiByRequest[nextRequest];
+				currentRequest = nextRequest;
+			}
+		}
+
+		// Flip the matching along the path, from the free request back to the
+		// taxi that started the search
+		int pathRequests = 0;
+		for (int j = freeRequest; j != -1;) {
+			int previous = previousRequest[j];
+			int matchedTaxi = previous == -1 ? taxi : taxiByRequest[previous];
+			taxiByRequest[j] = matchedTaxi;
+			requestByTaxi[matchedTaxi] = j;
+			j = previous;
+			pathRequests++;
+		}
+
+		// Step k of the search scanned the dim - k requests not yet visited
+		if (listener != null) {
+			listener.onRelaxations((long) steps * dim - (long) steps * (steps - 1) / 2);
+			listener.onAugmentation(2 * pathRequests - 1);
+		}
+	}
+
+	/**
+	 * Sets the listener told about every augmentation and the relaxations of
+	 * its search.
+	 *
+	 * @param listener
+	 *            The listener, or null for none
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Cost of matching taxi i to request j, zero for padded taxis and
+	 * requests.
+	 */
+	private double cost(int i, int j) {
+		return i < rows && j < cols ? costs.cost(i, j) : 0.0;
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public double[] getTaxiPotentials() {
+		return taxiPotential;
+	}
+
+	public double[] getRequestPotentials() {
+		return requestPotential;
+	}
+
+	/**
+	 * @return The number of augmentations of the last execution
+	 */
+	public int getNumAugmentations() {
+		return numAugmentations;
+	}
+}
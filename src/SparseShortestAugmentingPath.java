@@ -0,0 +1,629 @@
+import java.util.Arrays;
+
+/**
+ * Computes a small cost matching on a sparse bipartite graph that only keeps
+ * the edges between each taxi and its k nearest requests, and between each
+ * request and its k nearest taxis. The neighbors are found with a
+ * {@link KdTree}, so building the graph takes O(n k log n) time and O(n k)
+ * memory instead of the n^2 edges of the dense graph. Only square instances,
+ * with as many taxis as requests, are supported.
+ * <p>
+ *
+ * The matching is built by successive shortest augmenting paths, as in
+ * {@link ShortestAugmentingPath}, with a potential on every vertex that keeps
+ * the reduced cost
+ *
+ * <pre>
+ * cost(u, v) + potential[u] - potential[v]
+ * </pre>
+ *
+ * of every residual edge non-negative. Each augmentation runs a heap based
+ * Dijkstra from one free taxi and stops at the first free request it settles,
+ * and only the potentials of the settled vertices are updated, so a search
+ * costs time proportional to the part of the graph it explores.
+ * <p>
+ *
+ * If a free taxi cannot reach any free request over the sparse edges it is
+ * given an edge to every request. A free taxi has no edge into it, so its
+ * potential can be lowered to fit the new edges, and it then reaches every
+ * request directly.
+ * <p>
+ *
+ * Once every taxi is matched the matching is optimal over the kept edges.
+ * Unless turned off with {@link #setExact(boolean)}, every left out edge is
+ * then priced: an edge with a negative reduced cost is added to the graph, its
+ * taxi is unmatched and augmented again, until no such edge is left and the
+ * matching is optimal over all edges. Pricing takes O(n^2) time but only O(n)
+ * memory, and the left out edges rarely matter, so it usually takes one or two
+ * rounds.
+ */
+public class SparseShortestAugmentingPath {
+
+	// Relative slack below zero before a reduced cost counts as negative
+	private static final double TOLERANCE = 1e-12;
+
+	private final CostOracle costs;
+	private final int numTaxis, numRequests;
+	private boolean exact = true;
+
+	// Requests adjacent to each taxi (sorted) and the costs of those edges
+	private final int[][] adj;
+	private final double[][] adjCost;
+	private final boolean[] dense;
+	private int numDensified;
+
+	// Told about every augmentation, or null
+	private MatchingListener listener;
+
+	private final double[] taxiPotential, requestPotential;
+	private final int[] requestByTaxi, taxiByRequest;
+	private final double[] matchedCost;
+	private int numMatched;
+
+	// Dijkstra state over the vertices, taxi t is vertex t and request r is
+	// vertex numTaxis + r. Only the touched vertices are reset after a search.
+	private final double[] distTo;
+	private final int[] parentTaxi;
+	private final double[] parentCost;
+	private final boolean[] reached, settled;
+	private final int[] touched;
+	private int numTouched;
+
+	// Binary min heap of vertices on distTo, with each vertex's heap position
+	private final int[] heap;
+	private final int[] heapPosition;
+	private int heapSize;
+
+	/**
+	 * Builds the sparse graph.
+	 *
+	 * @param taxis
+	 *            Locations of the taxis (Set A)
+	 * @param requests
+	 *            Locations of the requests (Set B)
+	 * @param costs
+	 *            The costs of matching each taxi to each request, growing with
+	 *            the distance between their locations
+	 * @param neighbors
+	 *            Number of nearest neighbors kept per taxi and per request
+	 * @throws IllegalArgumentException
+	 *             If there are not as many taxis as requests
+	 */
+	public SparseShortestAugmentingPath(PointSet taxis, PointSet requests, CostOracle costs,
+			int neighbors) {
+		if (costs.numTaxis() != costs.numRequests()) {
+			throw new IllegalArgumentException("Expected as many taxis as requests, got "
+					+ costs.numTaxis() + " taxis and " + costs.numRequests() + " requests");
+		}
+		this.costs = costs;
+		this.numTaxis = costs.numTaxis();
+		this.numRequests = costs.numRequests();
+
+		adj = new int[numTaxis][];
+		adjCost = new double[numTaxis][];
+		dense = new boolean[numTaxis];
+		buildGraph(taxis, requests, Math.max(1, neighbors));
+
+		taxiPotential = new double[numTaxis];
+		requestPotential = new double[numRequests];
+		requestByTaxi = new int[numTaxis];
+		taxiByRequest = new int[numRequests];
+		matchedCost = new double[numRequests];
+
+		int V = numTaxis + numRequests;
+		distTo = new double[V];
+		parentTaxi = new int[numRequests];
+		parentCost = new double[numRequests];
+		reached = new boolean[V];
+		settled = new boolean[V];
+		touched = new int[V];
+		heap = new int[V];
+		heapPosition = new int[V];
+	}
+
+	/**
+	 * Finds the k nearest requests of every taxi and the k nearest taxis of
+	 * every request, and stores the union of those edges per taxi.
+	 */
+	private void buildGraph(PointSet taxis, PointSet requests, int neighbors) {
+		Metric metric = taxis.getMetric();
+		double[][] taxiCoords = metric.embed(taxis);
+		double[][] requestCoords = metric.embed(requests);
+		double[] query = new double[taxiCoords.length];
+
+		int[][] nearestRequests = new int[numTaxis][];
+		int[] degree = new int[numTaxis];
+		if (numRequests > 0) {
+			KdTree requestTree = new KdTree(requestCoords, metric.isManhattan());
+			for (int t = 0; t < numTaxis; t++) {
+				nearestRequests[t] = requestTree.nearest(point(taxiCoords, t, query), neighbors);
+				degree[t] = nearestRequests[t].length;
+			}
+		}
+
+		int[][] nearestTaxis = new int[numRequests][];
+		if (numTaxis > 0) {
+			KdTree taxiTree = new KdTree(taxiCoords, metric.isManhattan());
+			for (int r = 0; r < numRequests; r++) {
+				nearestTaxis[r] = taxiTree.nearest(point(requestCoords, r, query), neighbors);
+				for (int t : nearestTaxis[r]) {
+					degree[t]++;
+				}
+			}
+		}
+
+		for (int t = 0; t < numTaxis; t++) {
+			adj[t] = new int[degree[t]];
+			degree[t] = 0;
+			if (nearestRequests[t] != null) {
+				for (int r : nearestRequests[t]) {
+					adj[t][degree[t]++] = r;
+				}
+			}
+		}
+		for (int r = 0; r < numRequests; r++) {
+			for (int t : nearestTaxis[r]) {
+				adj[t][degree[t]++] = r;
+			}
+		}
+
+		// Drop the edges found from both sides
+		for (int t = 0; t < numTaxis; t++) {
+			int[] list = adj[t];
+			Arrays.sort(list);
+			int size = 0;
+			for (int k = 0; k < list.length; k++) {
+				if (k == 0 || list[k] != list[k - 1]) {
+					list[size++] = list[k];
+				}
+			}
+			adj[t] = Arrays.copyOf(list, size);
+			adjCost[t] = new double[size];
+			for (int k = 0; k < size; k++) {
+				adjCost[t][k] = costs.cost(t, adj[t][k]);
+			}
+		}
+	}
+
+	private static double[] point(double[][] coords, int i, double[] query) {
+		for (int d = 0; d < coords.length; d++) {
+			query[d] = coords[d][i];
+		}
+		return query;
+	}
+
+	/**
+	 * Matches every taxi, or every request if there are fewer requests.
+	 *
+	 * @return The request matched to each taxi. A value of -1 means the taxi
+	 *         is unmatched (only when there are more taxis than requests).
+	 */
+	public int[] execute() {
+		Arrays.fill(taxiPotential, 0.0);
+		Arrays.fill(requestPotential, 0.0);
+		Arrays.fill(requestByTaxi, -1);
+		Arrays.fill(taxiByRequest, -1);
+		numMatched = 0;
+
+		augmentFreeTaxis();
+		if (exact) {
+			flattenPotentials();
+			while (price() > 0) {
+				augmentFreeTaxis();
+				flattenPotentials();
+			}
+		}
+		return Arrays.copyOf(requestByTaxi, numTaxis);
+	}
+
+	/**
+	 * Augments from every free taxi in order. A taxi that cannot reach a free
+	 * request over the sparse edges gets an edge to every request, after which
+	 * it reaches all of them.
+	 */
+	private void augmentFreeTaxis() {
+		for (int t = 0; t < numTaxis && numMatched < numRequests; t++) {
+			if (requestByTaxi[t] == -1 && !augment(t)) {
+				densify(t);
+				augment(t);
+			}
+		}
+	}
+
+	/**
+	 * Gives a free taxi an edge to every request.
+	 */
+	private void densify(int t) {
+		dense[t] = true;
+		adj[t] = new int[numRequests];
+		adjCost[t] = new double[numRequests];
+		for (int r = 0; r < numRequests; r++) {
+			adj[t][r] = r;
+			adjCost[t][r] = costs.cost(t, r);
+		}
+		numDensified++;
+		fitPotential(t);
+	}
+
+	/**
+	 * Sets the potential of a free taxi as low as it can go with every edge
+	 * out of it keeping a non-negative reduced cost. A free taxi has no edge
+	 * into it, so this keeps every reduced cost non-negative.
+	 */
+	private void fitPotential(int t) {
+		double potential = Double.NEGATIVE_INFINITY;
+		for (int k = 0; k < adj[t].length; k++) {
+			potential = Math.max(potential, requestPotential[adj[t][k]] - adjCost[t][k]);
+		}
+		taxiPotential[t] = potential;
+	}
+
+	/**
+	 * Replaces the potentials with the largest ones, capped at 0, that keep
+	 * every reduced cost of the sparse graph non-negative.
+	 * <p>
+	 *
+	 * Augmenting paths only lower the potentials of the vertices they settle,
+	 * so after many augmentations busy areas end up far below quiet ones, and
+	 * a left out edge between the two looks like it has a negative reduced
+	 * cost even if it cannot improve the matching. The largest potentials are
+	 * the shortest distances to every request from a virtual source with a 0
+	 * edge to each of them, where going from request r to request r' means its
+	 * taxi switching from r to r'. These distances only go negative where the
+	 * matching needs them to, so far fewer edges fail the pricing check.
+	 */
+	private void flattenPotentials() {
+		// Dijkstra on the reduced costs, starting every request at distance 0
+		for (int r = 0; r < numRequests; r++) {
+			touch(numTaxis + r, -requestPotential[r]);
+		}
+		while (heapSize > 0) {
+			int v = pop();
+			settled[v] = true;
+
+			int r = v - numTaxis;
+			int t = taxiByRequest[r];
+			if (t == -1) {
+				continue;
+			}
+
+			int[] requests = adj[t];
+			double[] edgeCosts = adjCost[t];
+			for (int k = 0; k < requests.length; k++) {
+				int w = numTaxis + requests[k];
+				if (requests[k] == r || settled[w]) {
+					continue;
+				}
+				double distance = distTo[v] + edgeCosts[k] - matchedCost[r] + requestPotential[r]
+						- requestPotential[requests[k]];
+				if (distance < distTo(w)) {
+					touch(w, distance);
+				}
+			}
+		}
+
+		for (int r = 0; r < numRequests; r++) {
+			requestPotential[r] += distTo[numTaxis + r];
+		}
+		for (int t = 0; t < numTaxis; t++) {
+			int r = requestByTaxi[t];
+			if (r == -1) {
+				fitPotential(t);
+			} else {
+				taxiPotential[t] = requestPotential[r] - matchedCost[r];
+			}
+		}
+		clearSearch();
+	}
+
+	/**
+	 * Looks for edges left out of the sparse graph that have a negative
+	 * reduced cost, meaning the matching is not optimal over all edges. Each
+	 * taxi with such edges gets them added, is unmatched and has its potential
+	 * fitted to its new edges, so it can be augmented again. Scans every pair
+	 * once, in O(n^2) time but without storing anything per pair.
+	 *
+	 * @return The number of taxis that were unmatched
+	 */
+	private int price() {
+		int[] missing = new int[numRequests];
+		int unmatched = 0;
+
+		for (int t = 0; t < numTaxis; t++) {
+			if (dense[t]) {
+				continue;
+			}
+
+			int count = 0;
+			int k = 0;
+			for (int r = 0; r < numRequests; r++) {
+				if (k < adj[t].length && adj[t][k] == r) {
+					k++;
+					continue;
+				}
+				double cost = costs.cost(t, r);
+				double reduced = cost + taxiPotential[t] - requestPotential[r];
+				if (reduced < -TOLERANCE * Math.max(1.0, Math.abs(cost))) {
+					missing[count++] = r;
+				}
+			}
+			if (count == 0) {
+				continue;
+			}
+
+			addEdges(t, missing, count);
+			int r = requestByTaxi[t];
+			if (r != -1) {
+				requestByTaxi[t] = -1;
+				taxiByRequest[r] = -1;
+				numMatched--;
+				unmatched++;
+			}
+			fitPotential(t);
+		}
+		return unmatched;
+	}
+
+	/**
+	 * Merges sorted requests into the sorted adjacency list of a taxi.
+	 */
+	private void addEdges(int t, int[] requests, int count) {
+		int[] oldAdj = adj[t];
+		double[] oldCost = adjCost[t];
+		int size = oldAdj.length + count;
+		int[] newAdj = new int[size];
+		double[] newCost = new double[size];
+
+		int i = 0;
+		int j = 0;
+		for (int k = 0; k < size; k++) {
+			if (j == count || (i < oldAdj.length && oldAdj[i] < requests[j])) {
+				newAdj[k] = oldAdj[i];
+				newCost[k] = oldCost[i++];
+			} else {
+				newAdj[k] = requests[j];
+				newCost[k] = costs.cost(t, requests[j++]);
+			}
+		}
+		adj[t] = newAdj;
+		adjCost[t] = newCost;
+		dense[t] = size == numRequests;
+	}
+
+	/**
+	 * Finds the shortest augmenting path from a free taxi to any free request
+	 * and flips the matching along it.
+	 *
+	 * @param source
+	 *            The free taxi to augment from
+	 * @return False if no free request can be reached
+	 */
+	private boolean augment(int source) {
+		touch(source, 0.0);
+
+		int target = -1;
+		while (heapSize > 0) {
+			int v = pop();
+			settled[v] = true;
+
+			if (v < numTaxis) {
+				relaxTaxi(v);
+			} else {
+				int r = v - numTaxis;
+				int t = taxiByRequest[r];
+				if (t == -1) {
+					target = r;
+					break;
+				}
+
+				// The only edge out of a matched request goes to its taxi
+				double reduced = -matchedCost[r] + requestPotential[r] - taxiPotential[t];
+				if (!settled[t] && distTo[v] + reduced < distTo(t)) {
+					touch(t, distTo[v] + reduced);
+				}
+			}
+		}
+
+		if (target == -1) {
+			if (listener != null) {
+				listener.onRelaxations(countRelaxations());
+			}
+			clearSearch();
+			return false;
+		}
+
+		// Shift the potentials of the settled vertices so the path is tight
+		double pathLength = distTo[numTaxis + target];
+		for (int k = 0; k < numTouched; k++) {
+			int v = touched[k];
+			if (!settled[v]) {
+				continue;
+			}
+			if (v < numTaxis) {
+				taxiPotential[v] += distTo[v] - pathLength;
+			} else {
+				requestPotential[v - numTaxis] += distTo[v] - pathLength;
+			}
+		}
+
+		// Flip the matching along the path, from the free request back to
+		// the source
+		int pathTaxis = 0;
+		int r = target;
+		while (true) {
+			int t = parentTaxi[r];
+			int previous = requestByTaxi[t];
+			requestByTaxi[t] = r;
+			taxiByRequest[r] = t;
+			matchedCost[r] = parentCost[r];
+			pathTaxis++;
+			if (t == source) {
+				break;
+			}
+			r = previous;
+		}
+		numMatched++;
+
+		if (listener != null) {
+			listener.onRelaxations(countRelaxations());
+			listener.onAugmentation(2 * pathTaxis - 1);
+		}
+		clearSearch();
+		return true;
+	}
+
+	/**
+	 * Number of edges out of the vertices settled by the current search: the
+	 * sparse edges of each taxi and the matched edge of each request.
+	 */
+	private long countRelaxations() {
+		long relaxations = 0;
+		for (int k = 0; k < numTouched; k++) {
+			int v = touched[k];
+			if (settled[v]) {
+				relaxations += v < numTaxis ? adj[v].length : 1;
+			}
+		}
+		return relaxations;
+	}
+
+	/**
+	 * Relaxes the unmatched edges out of a settled taxi.
+	 */
+	private void relaxTaxi(int t) {
+		int[] requests = adj[t];
+		double[] edgeCosts = adjCost[t];
+		for (int k = 0; k < requests.length; k++) {
+			int r = requests[k];
+			int w = numTaxis + r;
+			if (r == requestByTaxi[t] || settled[w]) {
+				continue;
+			}
+
+			double distance = distTo[t] + edgeCosts[k] + taxiPotential[t] - requestPotential[r];
+			if (distance < distTo(w)) {
+				touch(w, distance);
+				parentTaxi[r] = t;
+				parentCost[r] = edgeCosts[k];
+			}
+		}
+	}
+
+	/**
+	 * Tentative distance of a vertex in the current search.
+	 */
+	private double distTo(int v) {
+		return reached[v] ? distTo[v] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Lowers the distance of an unsettled vertex, putting it on the heap the
+	 * first time it is reached.
+	 */
+	private void touch(int v, double distance) {
+		distTo[v] = distance;
+		if (!reached[v]) {
+			reached[v] = true;
+			touched[numTouched++] = v;
+			heap[heapSize] = v;
+			heapPosition[v] = heapSize++;
+		}
+		siftUp(heapPosition[v]);
+	}
+
+	/**
+	 * Resets the state of every vertex touched by the last search.
+	 */
+	private void clearSearch() {
+		for (int k = 0; k < numTouched; k++) {
+			int v = touched[k];
+			reached[v] = false;
+			settled[v] = false;
+		}
+		numTouched = 0;
+		heapSize = 0;
+	}
+
+	private int pop() {
+		int v = heap[0];
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPosition[heap[0]] = 0;
+			siftDown(0);
+		}
+		return v;
+	}
+
+	private void siftUp(int i) {
+		int v = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (distTo[heap[parent]] <= distTo[v]) {
+				break;
+			}
+			heap[i] = heap[parent];
+			heapPosition[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		heapPosition[v] = i;
+	}
+
+	private void siftDown(int i) {
+		int v = heap[i];
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && distTo[heap[child + 1]] < distTo[heap[child]]) {
+				child++;
+			}
+			if (distTo[v] <= distTo[heap[child]]) {
+				break;
+			}
+			heap[i] = heap[child];
+			heapPosition[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapPosition[v] = i;
+	}
+
+	/**
+	 * Sets the listener told about every augmentation and the relaxations of
+	 * its search.
+	 *
+	 * @param listener
+	 *            The listener, or null for none
+	 */
+	public void setListener(MatchingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets whether the matching is checked against every edge left out of the
+	 * sparse graph (the default). Without the check the result is optimal over
+	 * the kept edges only, but no O(n^2) scan is needed.
+	 *
+	 * @param exact
+	 *            True to make the matching optimal over all edges
+	 */
+	public void setExact(boolean exact) {
+		this.exact = exact;
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public int getNumEdges() {
+		int edges = 0;
+		for (int t = 0; t < numTaxis; t++) {
+			edges += adj[t].length;
+		}
+		return edges;
+	}
+
+	public int getNumDensified() {
+		return numDensified;
+	}
+}
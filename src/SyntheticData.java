@@ -1,71 +1,141 @@
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Generates random synthetic 1D and 2D data and the associated cost matrix.
+ * <p>
+ *
+ * All randomness comes from a single seed. Every set of points draws from its
+ * own stream, and uniform points are generated in fixed size blocks that each
+ * have a stream derived from the seed, so blocks can be filled in parallel and
+ * the same seed always gives the same data, bit for bit, whatever the number
+ * of threads.
  */
 public class SyntheticData {
-	
-	public static int[][] coefficientMapping;
+
+	// Streams of the taxi and request points
+	private static final long TAXI_STREAM = 0;
+	private static final long REQUEST_STREAM = 1;
+
+	// Points per block of parallel uniform generation
+	private static final int BLOCK_SIZE = 4096;
+
+	private final long seed;
+
+	// 1D points are integers in [0, range)
+	private int range = 10000;
+
+	// Locations of the last generated data set
+	private PointSet taxis;
+	private PointSet requests;
+
+	/**
+	 * Creates a generator with a random seed.
+	 */
+	public SyntheticData() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Creates a generator whose data sets are fully determined by a seed.
+	 * 
+	 * @param seed
+	 *            The seed
+	 */
+	public SyntheticData(long seed) {
+		this.seed = seed;
+	}
 
 	/**
 	 * Generates 1D synthetic data and creates a cost matrix. Picks a random
-	 * integer between 0 and 10000 and adds it to setA (no repeats). Same thing
-	 * for setB. Generates the absolute value distance between each node of setA
-	 * and setB and creates a cost matrix.
+	 * integer between 0 and the range (10000 by default) and adds it to setA
+	 * (no repeats). Same thing for setB. Generates the absolute value distance
+	 * between each node of setA and setB and creates a cost matrix.
 	 * 
 	 * @param numSetA
 	 *            The number of taxis (nodes in set A)
 	 * @return Cost matrix of the data
 	 */
 	public double[][] generateSynthetic1D(int numSetA) {
-		
-		coefficientMapping = new int[numSetA][numSetA];
+		generatePoints1D(numSetA);
+		return PointSet.costMatrix(taxis, requests);
+	}
 
-		Random randSetA = new Random();
-		Random randSetB = new Random();
+	/**
+	 * Generates the points of {@link #generateSynthetic1D(int)} without the
+	 * cost matrix.
+	 * 
+	 * @param numSetA
+	 *            The number of taxis (nodes in set A)
+	 */
+	public void generatePoints1D(int numSetA) {
+		if (numSetA > range) {
+			throw new IllegalArgumentException("Cannot pick " + numSetA
+					+ " distinct points out of a range of " + range);
+		}
 
-		ArrayList<Integer> setA = new ArrayList<Integer>();
-		ArrayList<Integer> setB = new ArrayList<Integer>();
+		double[] Xtaxi = sampleDistinct(numSetA, stream(TAXI_STREAM));
+		double[] Xrequest = sampleDistinct(numSetA, stream(REQUEST_STREAM));
 
-		for (int i = 0; i < numSetA; i++) {
-			while (true) {
-				int test = randSetA.nextInt(10000);
-
-				if (!setA.contains(test)) {
-					setA.add(test);
-				} else {
-					continue;
-				}
-				break;
-			}
-			while (true) {
-				int test2 = randSetB.nextInt(10000);
-
-				if (!setB.contains(test2)) {
-					setB.add(test2);
-				} else {
-					continue;
-				}
-				break;
+		taxis = new PointSet(Xtaxi, new double[numSetA], Metric.LINE);
+		requests = new PointSet(Xrequest, new double[numSetA], Metric.LINE);
+	}
+
+	/**
+	 * Picks k distinct integers from [0, range) in random order, in O(k)
+	 * expected time. When k is a large part of the range the first k slots of
+	 * a Fisher Yates shuffle of the range are used, otherwise numbers are
+	 * drawn until k distinct ones are found, using a hash set of ints that is
+	 * kept at most half full.
+	 */
+	private double[] sampleDistinct(int k, Random rand) {
+		double[] values = new double[k];
+
+		if ((long) range <= 4L * k) {
+			int[] pool = new int[range];
+			for (int i = 0; i < range; i++) {
+				pool[i] = i;
 			}
-		}
-		
-		for (int i = 0; i < numSetA; i++) {
-			for (int j = 0; j < numSetA; j++) {
-				coefficientMapping[i][j] = setA.get(i) < setB.get(j) ? 3 : 6;
+			for (int i = 0; i < k; i++) {
+				int swap = i + rand.nextInt(range - i);
+				int temp = pool[i];
+				pool[i] = pool[swap];
+				pool[swap] = temp;
+				values[i] = pool[i];
 			}
+			return values;
 		}
 
-		double[][] costMatrix = new double[numSetA][numSetA];
-
-		for (int i = 0; i < costMatrix.length; i++) {
-			for (int j = 0; j < costMatrix[i].length; j++) {
-				costMatrix[i][j] = Math.abs(setA.get(i) - setB.get(j));
+		// Open addressing set of the values picked so far, -1 marks empty
+		int capacity = Integer.highestOneBit(Math.max(2 * k, 1)) << 1;
+		int shift = Integer.numberOfLeadingZeros(capacity) + 1;
+		int[] table = new int[capacity];
+		Arrays.fill(table, -1);
+
+		int count = 0;
+		while (count < k) {
+			int value = rand.nextInt(range);
+			int slot = (value * 0x9E3779B9) >>> shift;
+			while (table[slot] != -1 && table[slot] != value) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			if (table[slot] == -1) {
+				table[slot] = value;
+				values[count++] = value;
 			}
 		}
-		return costMatrix;
+		return values;
+	}
+
+	/**
+	 * Sets the range of the 1D points, which are integers 0 <= x < range.
+	 * 
+	 * @param range
+	 *            The number of possible points, at least the number of taxis
+	 */
+	public void setRange(int range) {
+		this.range = range;
 	}
 
 	/**
@@ -80,37 +150,29 @@ public class SyntheticData {
 	 * @return Cost matrix of the data
 	 */
 	public double[][] generateSynthetic2D(int numSetA) {
+		generatePoints2D(numSetA);
+		return PointSet.costMatrix(taxis, requests);
+	}
 
-		Random randSetA = new Random();
-		Random randSetB = new Random();
-
-		double[][] costMatrix = new double[numSetA][numSetA];
-
-		ArrayList<Double> Xtaxi = new ArrayList<Double>();
-		ArrayList<Double> Ytaxi = new ArrayList<Double>();
-		ArrayList<Double> Xrequest = new ArrayList<Double>();
-		ArrayList<Double> Yrequest = new ArrayList<Double>();
-
-		for (int i = 0; i < numSetA; i++) {
-			Xtaxi.add(randSetA.nextDouble());
-			Ytaxi.add(randSetA.nextDouble());
-			Xrequest.add(randSetB.nextDouble());
-			Yrequest.add(randSetB.nextDouble());
-		}
-
-		for (int i = 0; i < costMatrix.length; i++) {
-			for (int j = 0; j < costMatrix[i].length; j++) {
-				double X1 = Xtaxi.get(i);
-				double Y1 = Ytaxi.get(i);
+	/**
+	 * Generates the points of {@link #generateSynthetic2D(int)} without the
+	 * cost matrix.
+	 * 
+	 * @param numSetA
+	 *            The number of taxis (nodes in set A)
+	 */
+	public void generatePoints2D(int numSetA) {
 
-				double X2 = Xrequest.get(j);
-				double Y2 = Yrequest.get(j);
+		double[] Xtaxi = new double[numSetA];
+		double[] Ytaxi = new double[numSetA];
+		double[] Xrequest = new double[numSetA];
+		double[] Yrequest = new double[numSetA];
 
-				costMatrix[i][j] = Math.sqrt(Math.pow((X2 - X1), 2.0) + Math.pow((Y2 - Y1), 2.0));
-			}
-		}
+		fillUniform(Xtaxi, Ytaxi, 0, numSetA, TAXI_STREAM);
+		fillUniform(Xrequest, Yrequest, 0, numSetA, REQUEST_STREAM);
 
-		return costMatrix;
+		taxis = new PointSet(Xtaxi, Ytaxi, Metric.EUCLIDEAN);
+		requests = new PointSet(Xrequest, Yrequest, Metric.EUCLIDEAN);
 	}
 
 	/**
@@ -133,46 +195,49 @@ public class SyntheticData {
 	 * @return Cost matrix of the data
 	 */
 	public double[][] generateSynthetic2DExample(int numSetA) {
-		ArrayList<UberObject> taxis = new ArrayList<UberObject>();
-		ArrayList<UberObject> requests = new ArrayList<UberObject>();
-		ArrayList<UberObject> allPoints = new ArrayList<UberObject>();
-
-		double[][] costMatrix = new double[numSetA][numSetA];
-		UberObject object = null;
-		double ending = Math.sqrt(numSetA * 2);
-		for (int i = 0; i < ending; i++) {
-			for (int j = 0; j < ending; j++) {
-				object = new UberObject(String.valueOf(i), String.valueOf(j));
-				allPoints.add(object);
-			}
-		}
+		generatePoints2DExample(numSetA);
+		return PointSet.costMatrix(taxis, requests);
+	}
 
-		Collections.shuffle(allPoints);
+	/**
+	 * Generates the points of {@link #generateSynthetic2DExample(int)} without
+	 * the cost matrix.
+	 * 
+	 * @param numSetA
+	 *            The number of taxis (nodes in set A)
+	 */
+	public void generatePoints2DExample(int numSetA) {
+		int side = (int) Math.ceil(Math.sqrt(numSetA * 2));
 
-		for (int i = 0; i < allPoints.size(); i++) {
-			if (i < numSetA) {
-				taxis.add(allPoints.get(i));
-			} else {
-				requests.add(allPoints.get(i));
-			}
+		// Shuffle the grid cells, cell k is the point (k / side, k % side)
+		int[] cells = new int[side * side];
+		for (int k = 0; k < cells.length; k++) {
+			cells[k] = k;
+		}
+		Random rand = stream(TAXI_STREAM);
+		for (int k = cells.length - 1; k > 0; k--) {
+			int swap = rand.nextInt(k + 1);
+			int temp = cells[k];
+			cells[k] = cells[swap];
+			cells[swap] = temp;
 		}
 
-		for (int i = 0; i < costMatrix.length; i++) {
-			for (int j = 0; j < costMatrix[i].length; j++) {
-				int X1 = Integer.valueOf(taxis.get(i).getLatitude());
-				int Y1 = Integer.valueOf(taxis.get(i).getLongitude());
-				int X2 = Integer.valueOf(requests.get(j).getLatitude());
-				int Y2 = Integer.valueOf(requests.get(j).getLongitude());
-
-				// Round it off to the 100's place if you are using distance
-				// formula
-				// costMatrix[i][j] = Math.sqrt(Math.pow((X2-X1), 2.0) +
-				// Math.pow((Y2-Y1), 2.0));
-				costMatrix[i][j] = Math.abs(X1 - X2) + Math.abs(Y1 - Y2);
-			}
+		double[] Xtaxi = new double[numSetA];
+		double[] Ytaxi = new double[numSetA];
+		double[] Xrequest = new double[numSetA];
+		double[] Yrequest = new double[numSetA];
+
+		for (int i = 0; i < numSetA; i++) {
+			Xtaxi[i] = cells[i] / side;
+			Ytaxi[i] = cells[i] % side;
+			Xrequest[i] = cells[numSetA + i] / side;
+			Yrequest[i] = cells[numSetA + i] % side;
 		}
 
-		return costMatrix;
+		// Use Metric.EUCLIDEAN and round it off to the 100's place if you are
+		// using distance formula
+		this.taxis = new PointSet(Xtaxi, Ytaxi, Metric.MANHATTAN);
+		this.requests = new PointSet(Xrequest, Yrequest, Metric.MANHATTAN);
 	}
 
 	/**
@@ -192,43 +257,118 @@ public class SyntheticData {
 	 * @return Cost matrix of the data
 	 */
 	public double[][] generateSynthetic2DExample2(int nodeSize) {
-		Random randSetA = new Random();
-		Random randSetB = new Random();
-
-		double[][] costMatrix = new double[nodeSize][nodeSize];
+		generatePoints2DExample2(nodeSize);
+		return PointSet.costMatrix(taxis, requests);
+	}
 
-		ArrayList<Double> Xtaxi = new ArrayList<Double>();
-		ArrayList<Double> Ytaxi = new ArrayList<Double>();
-		ArrayList<Double> Xrequest = new ArrayList<Double>();
-		ArrayList<Double> Yrequest = new ArrayList<Double>();
+	/**
+	 * Generates the points of {@link #generateSynthetic2DExample2(int)}
+	 * without the cost matrix.
+	 * 
+	 * @param nodeSize
+	 *            The number of taxis (nodes in set A)
+	 */
+	public void generatePoints2DExample2(int nodeSize) {
+		double[] Xtaxi = new double[nodeSize];
+		double[] Ytaxi = new double[nodeSize];
+		double[] Xrequest = new double[nodeSize];
+		double[] Yrequest = new double[nodeSize];
 
-		for (int i = 0; i < nodeSize; i++) {
-			Xtaxi.add(randSetA.nextDouble());
-			Ytaxi.add(randSetA.nextDouble());
-		}
+		fillUniform(Xtaxi, Ytaxi, 0, nodeSize, TAXI_STREAM);
 
 		for (int i = 0; i < nodeSize / 2; i++) {
-			Xrequest.add(Xtaxi.get(i));
-			Yrequest.add(Ytaxi.get(i));
+			Xrequest[i] = Xtaxi[i];
+			Yrequest[i] = Ytaxi[i];
 		}
 
-		for (int i = nodeSize / 2; i < nodeSize; i++) {
-			Xrequest.add(randSetB.nextDouble());
-			Yrequest.add(randSetB.nextDouble());
+		fillUniform(Xrequest, Yrequest, nodeSize / 2, nodeSize, REQUEST_STREAM);
+
+		taxis = new PointSet(Xtaxi, Ytaxi, Metric.EUCLIDEAN);
+		requests = new PointSet(Xrequest, Yrequest, Metric.EUCLIDEAN);
+	}
+
+	/**
+	 * Fills the points [from, to) with uniform coordinates in the unit square.
+	 * Point i belongs to block i / BLOCK_SIZE, and every block draws from its
+	 * own stream, so the blocks are filled in parallel.
+	 */
+	private void fillUniform(double[] x, double[] y, int from, int to, long stream) {
+		if (to > from) {
+			SharedPool.invoke(new UniformBlocks(x, y, from, to, deriveSeed(seed, stream)));
 		}
+	}
 
-		for (int i = 0; i < costMatrix.length; i++) {
-			for (int j = 0; j < costMatrix[i].length; j++) {
-				double X1 = Xtaxi.get(i);
-				double Y1 = Ytaxi.get(i);
+	/**
+	 * Fills the points [from, to) of a block range of {@link #fillUniform}.
+	 */
+	private static class UniformBlocks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final double[] x, y;
+		private final int from, to;
+		private final long streamSeed;
+
+		private UniformBlocks(double[] x, double[] y, int from, int to, long streamSeed) {
+			this.x = x;
+			this.y = y;
+			this.from = from;
+			this.to = to;
+			this.streamSeed = streamSeed;
+		}
 
-				double X2 = Xrequest.get(j);
-				double Y2 = Yrequest.get(j);
+		@Override
+		protected void compute() {
+			int firstBlock = from / BLOCK_SIZE;
+			int lastBlock = (to - 1) / BLOCK_SIZE;
+			if (firstBlock < lastBlock) {
+				int split = ((firstBlock + lastBlock + 1) / 2) * BLOCK_SIZE;
+				invokeAll(new UniformBlocks(x, y, from, split, streamSeed), new UniformBlocks(x,
+						y, split, to, streamSeed));
+				return;
+			}
 
-				costMatrix[i][j] = Math.sqrt(Math.pow((X2 - X1), 2.0) + Math.pow((Y2 - Y1), 2.0));
+			Random rand = new Random(deriveSeed(streamSeed, firstBlock));
+			for (int i = from; i < to; i++) {
+				x[i] = rand.nextDouble();
+				y[i] = rand.nextDouble();
 			}
 		}
+	}
+
+	/**
+	 * Random numbers of one stream of this generator.
+	 */
+	private Random stream(long stream) {
+		return new Random(deriveSeed(seed, stream));
+	}
+
+	/**
+	 * Derives the seed of a sub stream by hashing the parent seed and the
+	 * stream index with the SplitMix64 finalizer, so nearby indices give
+	 * unrelated seeds.
+	 * 
+	 * @param seed
+	 *            Seed of the parent stream
+	 * @param stream
+	 *            Index of the sub stream
+	 * @return The seed of the sub stream
+	 */
+	public static long deriveSeed(long seed, long stream) {
+		long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Getters for the locations of the last generated data set
+	 */
+
+	public PointSet getTaxis() {
+		return taxis;
+	}
 
-		return costMatrix;
+	public PointSet getRequests() {
+		return requests;
 	}
 }
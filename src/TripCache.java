@@ -0,0 +1,250 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary cache of the trips loaded from a csv file, and optionally of their
+ * cost matrix, so repeated runs over the same slice of a file skip parsing and
+ * the O(n^2) distance computation. The cache of the first n trips of
+ * "file.csv" is stored next to it as "file.csv.n.cache".
+ * <p>
+ *
+ * Layout (little endian):
+ *
+ * <pre>
+ * int    magic, version
+ * int    n, metric (ordinal of {@link Metric})
+ * long   hash of the source file
+ * int    1 if the cost matrix follows the coordinates, 0 otherwise
+ * int    padding
+ * double taxi x[n], taxi y[n], request x[n], request y[n]
+ * double costMatrix[n][n] (row major, optional)
+ * </pre>
+ *
+ * A cache is only used if its header matches: the same format version, the
+ * same n and the same source file hash. The hash covers the length and last
+ * modified time of the source file and its first and last 64 KB, which is
+ * enough to notice a replaced or edited file without reading gigabytes.
+ */
+public class TripCache {
+
+	private static final int MAGIC = 0x54524950; // "TRIP"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	// Bytes of the source file hashed at each end
+	private static final int HASHED_BYTES = 1 << 16;
+
+	private final String source;
+	private final int n;
+	private final File file;
+
+	private PointSet taxis;
+	private PointSet requests;
+	private CostOracle costs;
+
+	/**
+	 * Creates the cache of the first n trips of a csv file.
+	 *
+	 * @param source
+	 *            Name of the trip data csv file
+	 * @param n
+	 *            Number of trips
+	 */
+	public TripCache(String source, int n) {
+		this.source = source;
+		this.n = n;
+		this.file = new File(source + "." + n + ".cache");
+	}
+
+	/**
+	 * Reads the cache if it exists and matches the source file. The
+	 * coordinates are copied into point sets and the cost matrix, if stored,
+	 * stays memory mapped.
+	 *
+	 * @return True if the cache was read, false if there is no valid cache
+	 * @throws IOException
+	 *             If the cache or the source file cannot be read
+	 */
+	public boolean load() throws IOException {
+		if (!file.isFile() || file.length() < HEADER_SIZE) {
+			return false;
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(
+					ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != n) {
+				return false;
+			}
+			int metric = header.getInt();
+			if (metric < 0 || metric >= Metric.values().length || header.getLong() != hashSource()) {
+				return false;
+			}
+			boolean hasMatrix = header.getInt() == 1;
+
+			long coordinatesSize = 8L * 4 * n;
+			long matrixSize = hasMatrix ? 8L * n * n : 0;
+			if (channel.size() != HEADER_SIZE + coordinatesSize + matrixSize) {
+				return false;
+			}
+
+			double[][] coordinates = new double[4][n];
+			if (n > 0) {
+				DoubleBuffer buffer = channel
+						.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, coordinatesSize)
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+				for (int k = 0; k < 4; k++) {
+					buffer.get(coordinates[k]);
+				}
+			}
+
+			taxis = new PointSet(coordinates[0], coordinates[1], Metric.values()[metric]);
+			requests = new PointSet(coordinates[2], coordinates[3], Metric.values()[metric]);
+			costs = hasMatrix ? new MappedCostOracle(channel, HEADER_SIZE + coordinatesSize, n, n)
+					: null;
+			return true;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the cache, replacing any previous one. The file is written under
+	 * a temporary name first so a crashed run never leaves half a cache.
+	 *
+	 * @param taxis
+	 *            Locations of the n taxis
+	 * @param requests
+	 *            Locations of the n requests
+	 * @param costMatrix
+	 *            The n by n cost matrix, or null to store only the locations
+	 * @throws IOException
+	 *             If the cache cannot be written
+	 */
+	public void write(PointSet taxis, PointSet requests, double[][] costMatrix)
+			throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(n);
+			buffer.putInt(taxis.getMetric().ordinal());
+			buffer.putLong(hashSource());
+			buffer.putInt(costMatrix != null ? 1 : 0);
+			buffer.putInt(0);
+
+			double[][] columns = { taxis.getX(), taxis.getY(), requests.getX(), requests.getY() };
+			for (double[] column : columns) {
+				put(channel, buffer, column);
+			}
+			if (costMatrix != null) {
+				for (double[] row : costMatrix) {
+					put(channel, buffer, row);
+				}
+			}
+
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			raf.close();
+		}
+
+		if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Could not replace " + file);
+		}
+	}
+
+	/**
+	 * Appends values to the buffer, writing it out whenever it fills up.
+	 */
+	private static void put(FileChannel channel, ByteBuffer buffer, double[] values)
+			throws IOException {
+		int offset = 0;
+		while (offset < values.length) {
+			if (buffer.remaining() < 8) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+			}
+			int count = Math.min(buffer.remaining() / 8, values.length - offset);
+			buffer.asDoubleBuffer().put(values, offset, count);
+			buffer.position(buffer.position() + 8 * count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * FNV-1a hash of the source file's length, last modified time and the
+	 * bytes at both of its ends.
+	 */
+	private long hashSource() throws IOException {
+		File sourceFile = new File(source);
+		long hash = 0xcbf29ce484222325L;
+		hash = mix(hash, sourceFile.length());
+		hash = mix(hash, sourceFile.lastModified());
+
+		RandomAccessFile raf = new RandomAccessFile(sourceFile, "r");
+		try {
+			long length = raf.length();
+			byte[] bytes = new byte[(int) Math.min(length, HASHED_BYTES)];
+
+			raf.readFully(bytes);
+			for (byte b : bytes) {
+				hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+			}
+
+			raf.seek(length - bytes.length);
+			raf.readFully(bytes);
+			for (byte b : bytes) {
+				hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+			}
+		} finally {
+			raf.close();
+		}
+		return hash;
+	}
+
+	private static long mix(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ ((value >>> (8 * i)) & 0xff)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public PointSet getTaxis() {
+		return taxis;
+	}
+
+	public PointSet getRequests() {
+		return requests;
+	}
+
+	/**
+	 * Returns the cached costs, or null if the cache only holds the locations.
+	 */
+	public CostOracle getCosts() {
+		return costs;
+	}
+}
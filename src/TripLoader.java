@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads taxi and request locations from a trip data csv file (the NYC TLC
+ * format, with the pickup and dropoff coordinates in columns 10 to 13). The
+ * file is memory mapped in chunks that are parsed in parallel, and only the
+ * four coordinate columns are read, straight from the bytes into primitive
+ * arrays. No line Strings are created.
+ * <p>
+ *
+ * The first line is the header and is skipped. Rows that have too few
+ * columns, a coordinate that cannot be parsed or a coordinate of 0 (trips
+ * without a GPS fix) are skipped too.
+ */
+public class TripLoader {
+
+	// Bytes per chunk, each chunk is mapped and parsed by one task
+	private static final int CHUNK_SIZE = 1 << 24;
+
+	// Longest line a chunk reads past its end to finish its last row
+	private static final int MAX_LINE = 1 << 16;
+
+	private static final int PICKUP_LONGITUDE = 10;
+	private static final int LAST_COLUMN = 13;
+
+	private static final double[] POWERS_OF_TEN = new double[16];
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final String filename;
+
+	private PointSet taxis;
+	private PointSet requests;
+
+	/**
+	 * Creates a loader for a trip data file.
+	 *
+	 * @param filename
+	 *            Name of the trip data csv file
+	 */
+	public TripLoader(String filename) {
+		this.filename = filename;
+	}
+
+	/**
+	 * Loads the first valid trips of the file. The pickup location of every
+	 * trip becomes a taxi and the dropoff location a request, both with the
+	 * haversine metric.
+	 *
+	 * @param maxTrips
+	 *            Maximum number of trips to load
+	 * @return The number of trips loaded, less than maxTrips only if the file
+	 *         has fewer valid rows
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public int load(int maxTrips) throws IOException {
+		double[][] coordinates = new double[4][Math.max(Math.min(maxTrips, 1024), 0)];
+		int count = 0;
+
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			int parallelism = SharedPool.getParallelism();
+
+			// Parse as many chunks at a time as there are threads, in file
+			// order, until enough trips are found
+			long start = 0;
+			while (start < size && count < maxTrips) {
+				int chunks = (int) Math.min(parallelism, (size - start + CHUNK_SIZE - 1) / CHUNK_SIZE);
+				Chunk[] batch = new Chunk[chunks];
+				for (int c = 0; c < chunks; c++) {
+					long from = start + (long) c * CHUNK_SIZE;
+					batch[c] = new Chunk(channel, size, from, Math.min(size, from + CHUNK_SIZE),
+							maxTrips - count);
+				}
+				SharedPool.invoke(new Batch(batch, 0, chunks));
+
+				for (int c = 0; c < chunks && count < maxTrips; c++) {
+					int taken = Math.min(batch[c].count, maxTrips - count);
+					if (count + taken > coordinates[0].length) {
+						int capacity = Math.max(count + taken, 2 * coordinates[0].length);
+						for (int k = 0; k < 4; k++) {
+							coordinates[k] = Arrays.copyOf(coordinates[k], capacity);
+						}
+					}
+					for (int k = 0; k < 4; k++) {
+						System.arraycopy(batch[c].coordinates[k], 0, coordinates[k], count, taken);
+					}
+					count += taken;
+				}
+				start += (long) chunks * CHUNK_SIZE;
+			}
+		} finally {
+			file.close();
+		}
+
+		// Columns 10 to 13 are pickup longitude, pickup latitude, dropoff
+		// longitude and dropoff latitude
+		taxis = new PointSet(Arrays.copyOf(coordinates[1], count),
+				Arrays.copyOf(coordinates[0], count), Metric.HAVERSINE);
+		requests = new PointSet(Arrays.copyOf(coordinates[3], count),
+				Arrays.copyOf(coordinates[2], count), Metric.HAVERSINE);
+		return count;
+	}
+
+	/**
+	 * Parses a group of chunks in parallel.
+	 */
+	private static class Batch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Chunk[] chunks;
+		private final int lo, hi;
+
+		private Batch(Chunk[] chunks, int lo, int hi) {
+			this.chunks = chunks;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo == 1) {
+				try {
+					chunks[lo].parse();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Batch(chunks, lo, mid), new Batch(chunks, mid, hi));
+		}
+	}
+
+	/**
+	 * The rows that start inside [start, end) of the file. A row that starts
+	 * before the chunk belongs to the previous chunk, and the last row may run
+	 * past the end of the chunk.
+	 */
+	private static class Chunk {
+		private final FileChannel channel;
+		private final long size, start, end;
+
+		// No chunk needs more rows than are still missing
+		private final int maxTrips;
+
+		private double[][] coordinates = new double[4][1024];
+		private int count;
+
+		// Coordinates of the row being parsed
+		private final double[] row = new double[4];
+
+		private Chunk(FileChannel channel, long size, long start, long end, int maxTrips) {
+			this.channel = channel;
+			this.size = size;
+			this.start = start;
+			this.end = end;
+			this.maxTrips = maxTrips;
+		}
+
+		private void parse() throws IOException {
+			// Map one byte before the chunk to see whether it starts on a row
+			long mapStart = Math.max(0, start - 1);
+			long mapEnd = Math.min(size, end + MAX_LINE);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart,
+					mapEnd - mapStart);
+			int limit = (int) (end - mapStart);
+			int length = buffer.limit();
+
+			// The header is skipped like the partial row at the start of every
+			// other chunk
+			int position;
+			if (start == 0) {
+				position = nextLine(buffer, 0, length);
+			} else if (buffer.get(0) == '\n') {
+				position = 1;
+			} else {
+				position = nextLine(buffer, 1, length);
+			}
+
+			while (position < limit && count < maxTrips) {
+				int lineEnd = nextLine(buffer, position, length) - 1;
+				if (parseRow(buffer, position, lineEnd)) {
+					add();
+				}
+				position = lineEnd + 1;
+			}
+		}
+
+		/**
+		 * Reads the coordinate columns of the row [from, to) into row.
+		 *
+		 * @return True if the row is valid
+		 */
+		private boolean parseRow(MappedByteBuffer buffer, int from, int to) {
+			if (to > from && buffer.get(to - 1) == '\r') {
+				to--;
+			}
+
+			int column = 0;
+			int fieldStart = from;
+			for (int i = from; i <= to && column <= LAST_COLUMN; i++) {
+				if (i < to && buffer.get(i) != ',') {
+					continue;
+				}
+				if (column >= PICKUP_LONGITUDE) {
+					double value = parseDouble(buffer, fieldStart, i);
+					if (Double.isNaN(value) || value == 0.0) {
+						return false;
+					}
+					row[column - PICKUP_LONGITUDE] = value;
+				}
+				column++;
+				fieldStart = i + 1;
+			}
+			return column > LAST_COLUMN;
+		}
+
+		private void add() {
+			if (count == coordinates[0].length) {
+				for (int k = 0; k < 4; k++) {
+					coordinates[k] = Arrays.copyOf(coordinates[k], 2 * count);
+				}
+			}
+			for (int k = 0; k < 4; k++) {
+				coordinates[k][count] = row[k];
+			}
+			count++;
+		}
+	}
+
+	/**
+	 * Returns the position just after the next line break at or after from.
+	 */
+	private static int nextLine(MappedByteBuffer buffer, int from, int length) {
+		int i = from;
+		while (i < length && buffer.get(i) != '\n') {
+			i++;
+		}
+		return i + 1;
+	}
+
+	/**
+	 * Parses a decimal number from the bytes [from, to). Plain numbers with up
+	 * to 15 significant digits are parsed as an integer divided by a power of
+	 * ten, which gives the correctly rounded value since both are exact
+	 * doubles. Anything else (exponents, longer numbers) goes through
+	 * Double.parseDouble.
+	 *
+	 * @return The value, or NaN if the field is not a finite number
+	 */
+	private static double parseDouble(MappedByteBuffer buffer, int from, int to) {
+		int i = from;
+		while (i < to && buffer.get(i) == ' ') {
+			i++;
+		}
+		while (to > i && buffer.get(to - 1) == ' ') {
+			to--;
+		}
+		if (i == to) {
+			return Double.NaN;
+		}
+
+		boolean negative = false;
+		byte first = buffer.get(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		boolean plain = i < to;
+		for (int k = i; k < to && plain; k++) {
+			byte b = buffer.get(k);
+			if (b >= '0' && b <= '9') {
+				if (mantissa != 0 || b != '0') {
+					digits++;
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (decimals >= 0) {
+					decimals++;
+				}
+			} else if (b == '.' && decimals < 0) {
+				decimals = 0;
+			} else {
+				plain = false;
+			}
+		}
+
+		if (plain && digits <= 15 && decimals < POWERS_OF_TEN.length
+				&& (decimals != 0 || to - i > 1)) {
+			double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+			return negative ? -value : value;
+		}
+
+		char[] chars = new char[to - from];
+		for (int k = 0; k < chars.length; k++) {
+			chars[k] = (char) buffer.get(from + k);
+		}
+		try {
+			double value = Double.parseDouble(new String(chars));
+			return Double.isInfinite(value) ? Double.NaN : value;
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Getters
+	 */
+
+	public PointSet getTaxis() {
+		return taxis;
+	}
+
+	public PointSet getRequests() {
+		return requests;
+	}
+}